@@ -17,4 +17,10 @@ public class ROMType  {
     @NonNull private String md5sum;
     @NonNull private Map<String, String> files;
     @NonNull private Map<String, Integer> offsets;
+    // Expected file size in bytes, if known. Used to rule out ROM types before hashing.
+    private Long size;
+
+    public boolean isPossibleSize(long romSize) {
+        return (size == null) || (size == romSize);
+    }
 }
@@ -1,8 +1,11 @@
 package hawkeye.game.model;
 
 import hawkeye.config.model.ROMType;
+import hawkeye.parse.model.BasicBlockCache;
+import hawkeye.parse.model.SubgraphCache;
 import hawkeye.rom.exceptions.ROMAccessException;
 import hawkeye.rom.util.ROM;
+import hawkeye.rom.util.ROMSlice;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
@@ -16,12 +19,23 @@ public abstract class Game<TScriptIndexEntry extends ScriptIndexEntry> {
     @Getter
     protected ROM rom;
 
+    @Getter
+    private final SubgraphCache subgraphCache = new SubgraphCache();
+
+    @Getter
+    private final BasicBlockCache basicBlockCache = new BasicBlockCache();
+
     public String getDisplayName() {
         return romType.getShortName() + " (" + romType.getPlatform() + ")";
     }
 
     public abstract int read(long offset) throws ROMAccessException;
     public abstract int[] readArray(long offset, int length) throws ROMAccessException;
+    public abstract ROMSlice readSlice(long offset, int length) throws ROMAccessException;
+    // Reads without marking the bytes as read, for decoding ahead of what a parse has actually reached
+    public abstract int peek(long offset) throws ROMAccessException;
+    public abstract ROMSlice peekSlice(long offset, int length) throws ROMAccessException;
+    public abstract void markRead(long offset, int length);
     public abstract Optional<Long> readPointer(long offset) throws ROMAccessException;
     public abstract Optional<Long> readRelativePointer(long offset, long base) throws ROMAccessException;
 }
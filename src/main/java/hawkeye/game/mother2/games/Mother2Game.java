@@ -6,10 +6,13 @@ import hawkeye.game.model.Game;
 import hawkeye.graph.model.GraphNode;
 import hawkeye.parse.exceptions.InvalidTextException;
 import hawkeye.parse.model.ControlCodeUsage;
+import hawkeye.parse.model.ParseBudget;
 import hawkeye.rom.exceptions.ROMAccessException;
 import hawkeye.rom.util.ROM;
+import hawkeye.rom.util.ROMSlice;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -34,10 +37,22 @@ public abstract class Mother2Game extends Game<Mother2ScriptIndexEntry> {
         super(romType, rom);
     }
 
-    public abstract Optional<GraphNode<ControlCodeUsage>> parseToGraph(Mother2ScriptIndexEntry scriptIndexEntry)
+    public Optional<GraphNode<ControlCodeUsage>> parseToGraph(Mother2ScriptIndexEntry scriptIndexEntry)
+            throws InvalidTextException, ROMAccessException {
+        return parseToGraph(scriptIndexEntry, ParseBudget.createDefault());
+    }
+
+    public Optional<GraphNode<ControlCodeUsage>> parseToGraphSingleLine(Mother2ScriptIndexEntry scriptIndexEntry)
+            throws InvalidTextException, ROMAccessException {
+        return parseToGraphSingleLine(scriptIndexEntry, ParseBudget.createDefault());
+    }
+
+    public abstract Optional<GraphNode<ControlCodeUsage>> parseToGraph(Mother2ScriptIndexEntry scriptIndexEntry,
+                                                                       ParseBudget parseBudget)
             throws InvalidTextException, ROMAccessException;
 
-    public abstract Optional<GraphNode<ControlCodeUsage>> parseToGraphSingleLine(Mother2ScriptIndexEntry scriptIndexEntry)
+    public abstract Optional<GraphNode<ControlCodeUsage>> parseToGraphSingleLine(Mother2ScriptIndexEntry scriptIndexEntry,
+                                                                                 ParseBudget parseBudget)
             throws InvalidTextException, ROMAccessException;
 
     protected static List<Mother2ScriptIndexEntry> getStaticScriptIndex() {
@@ -74,7 +89,7 @@ public abstract class Mother2Game extends Game<Mother2ScriptIndexEntry> {
 
     public abstract List<Mother2ScriptIndexEntry> getScriptIndex() throws ROMAccessException;
 
-    public abstract Optional<Mother2ScriptIndexEntry> getUnusedScriptIndexEntry();
+    public abstract Iterator<Mother2ScriptIndexEntry> getUnusedScriptIndexEntries();
 
     @Override
     public int read(long offset) throws ROMAccessException {
@@ -85,4 +100,24 @@ public abstract class Mother2Game extends Game<Mother2ScriptIndexEntry> {
     public int[] readArray(long offset, int length) throws ROMAccessException {
         return rom.readArray(offset, length);
     }
+
+    @Override
+    public ROMSlice readSlice(long offset, int length) throws ROMAccessException {
+        return rom.readSlice(offset, length);
+    }
+
+    @Override
+    public int peek(long offset) throws ROMAccessException {
+        return rom.peek(offset);
+    }
+
+    @Override
+    public ROMSlice peekSlice(long offset, int length) throws ROMAccessException {
+        return rom.peekSlice(offset, length);
+    }
+
+    @Override
+    public void markRead(long offset, int length) {
+        rom.getCoverage().markRange(offset, length);
+    }
 }
@@ -6,12 +6,14 @@ import hawkeye.game.mother2.data.doors.Mother2GbaItemMap;
 import hawkeye.graph.model.GraphNode;
 import hawkeye.parse.exceptions.InvalidTextException;
 import hawkeye.parse.model.ControlCodeUsage;
+import hawkeye.parse.model.ParseBudget;
 import hawkeye.parse.util.CodeTreeParser;
 import hawkeye.rom.exceptions.ROMAccessException;
 import hawkeye.rom.util.GbaUtil;
 import hawkeye.rom.util.ROM;
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -54,7 +56,8 @@ public class Mother2GbaGame extends Mother2Game {
     }
 
     @Override
-    public Optional<GraphNode<ControlCodeUsage>> parseToGraph(Mother2ScriptIndexEntry scriptIndexEntry) throws InvalidTextException, ROMAccessException {
+    public Optional<GraphNode<ControlCodeUsage>> parseToGraph(Mother2ScriptIndexEntry scriptIndexEntry, ParseBudget parseBudget)
+            throws InvalidTextException, ROMAccessException {
         int pointerOffset;
         if (Mother2ScriptIndexEntry.IndexEntryType.NPC_1.equals(scriptIndexEntry.getType())) {
             pointerOffset = NPC_TABLE_OFFSET
@@ -104,11 +107,12 @@ public class Mother2GbaGame extends Mother2Game {
             return Optional.empty();
         }
 
-        return Optional.of(codeTreeParser.parseToGraph(this, pointer.get()));
+        return Optional.of(codeTreeParser.parseToGraph(this, pointer.get(), parseBudget));
     }
 
     @Override
-    public Optional<GraphNode<ControlCodeUsage>> parseToGraphSingleLine(Mother2ScriptIndexEntry scriptIndexEntry) throws InvalidTextException, ROMAccessException {
+    public Optional<GraphNode<ControlCodeUsage>> parseToGraphSingleLine(Mother2ScriptIndexEntry scriptIndexEntry, ParseBudget parseBudget)
+            throws InvalidTextException, ROMAccessException {
         throw new NotImplementedException();
     }
 
@@ -118,7 +122,7 @@ public class Mother2GbaGame extends Mother2Game {
     }
 
     @Override
-    public Optional<Mother2ScriptIndexEntry> getUnusedScriptIndexEntry() {
+    public Iterator<Mother2ScriptIndexEntry> getUnusedScriptIndexEntries() {
         throw new NotImplementedException();
     }
 
@@ -5,11 +5,16 @@ import hawkeye.game.mother2.data.doors.DoorDAO;
 import hawkeye.graph.model.GraphNode;
 import hawkeye.parse.exceptions.InvalidTextException;
 import hawkeye.parse.model.ControlCodeUsage;
+import hawkeye.parse.model.ParseBudget;
 import hawkeye.parse.util.CodeTreeParser;
 import hawkeye.rom.exceptions.ROMAccessException;
 import hawkeye.rom.util.ROM;
+import hawkeye.rom.util.ROMCoverage;
 import hawkeye.rom.util.SnesUtil;
+import hawkeye.rom.util.UnreadOffsetIterator;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 
@@ -66,47 +71,51 @@ public class Mother2SnesGame extends Mother2Game {
     }
 
     @Override
-    public Optional<Mother2ScriptIndexEntry> getUnusedScriptIndexEntry() {
+    public Iterator<Mother2ScriptIndexEntry> getUnusedScriptIndexEntries() {
+        List<ROMCoverage.Run> textBanks = new ArrayList<>(2);
+
         final long textBank1OffsetStart = romType.getOffsets().get(TEXT_BANK_1_START_OFFSET_KEY);
         final long textBank1OffsetEnd = romType.getOffsets().get(TEXT_BANK_1_END_OFFSET_KEY);
-
-        for (long offset = textBank1OffsetStart; offset <= textBank1OffsetEnd; ++offset) {
-            if (!rom.hasBeenRead(offset)) {
-                Mother2ScriptIndexEntry indexEntry = new Mother2ScriptIndexEntry(
-                        Mother2ScriptIndexEntry.IndexEntryType.OTHER, offset);
-                return Optional.of(indexEntry);
-            }
-        }
+        textBanks.add(new ROMCoverage.Run(textBank1OffsetStart, textBank1OffsetEnd + 1));
 
         final long textBank2OffsetStart = romType.getOffsets().get(TEXT_BANK_2_START_OFFSET_KEY);
         if (textBank2OffsetStart >= 0) {
             final long textBank2OffsetEnd = romType.getOffsets().get(TEXT_BANK_2_END_OFFSET_KEY);
+            textBanks.add(new ROMCoverage.Run(textBank2OffsetStart, textBank2OffsetEnd + 1));
+        }
 
-            for (long offset = textBank2OffsetStart; offset <= textBank2OffsetEnd; ++offset) {
-                if (!rom.hasBeenRead(offset)) {
-                    Mother2ScriptIndexEntry indexEntry = new Mother2ScriptIndexEntry(
-                            Mother2ScriptIndexEntry.IndexEntryType.OTHER, offset);
-                    return Optional.of(indexEntry);
-                }
+        UnreadOffsetIterator unreadOffsets = new UnreadOffsetIterator(rom.getCoverage(), textBanks);
+        return new Iterator<Mother2ScriptIndexEntry>() {
+            @Override
+            public boolean hasNext() {
+                return unreadOffsets.hasNext();
             }
-        }
 
-        return Optional.empty();
+            @Override
+            public Mother2ScriptIndexEntry next() {
+                return new Mother2ScriptIndexEntry(
+                        Mother2ScriptIndexEntry.IndexEntryType.OTHER, unreadOffsets.nextLong());
+            }
+        };
     }
 
     @Override
-    public Optional<GraphNode<ControlCodeUsage>> parseToGraph(Mother2ScriptIndexEntry scriptIndexEntry)
+    public Optional<GraphNode<ControlCodeUsage>> parseToGraph(Mother2ScriptIndexEntry scriptIndexEntry,
+                                                              ParseBudget parseBudget)
             throws ROMAccessException, InvalidTextException {
-        return parseToGraph(scriptIndexEntry, false);
+        return parseToGraph(scriptIndexEntry, false, parseBudget);
     }
 
     @Override
-    public Optional<GraphNode<ControlCodeUsage>> parseToGraphSingleLine(Mother2ScriptIndexEntry scriptIndexEntry)
+    public Optional<GraphNode<ControlCodeUsage>> parseToGraphSingleLine(Mother2ScriptIndexEntry scriptIndexEntry,
+                                                                        ParseBudget parseBudget)
             throws InvalidTextException, ROMAccessException {
-        return parseToGraph(scriptIndexEntry, true);
+        return parseToGraph(scriptIndexEntry, true, parseBudget);
     }
 
-    private Optional<GraphNode<ControlCodeUsage>> parseToGraph(Mother2ScriptIndexEntry scriptIndexEntry, boolean isSingleLine)
+    private Optional<GraphNode<ControlCodeUsage>> parseToGraph(Mother2ScriptIndexEntry scriptIndexEntry,
+                                                               boolean isSingleLine,
+                                                               ParseBudget parseBudget)
             throws ROMAccessException, InvalidTextException {
         long offset;
         if (Mother2ScriptIndexEntry.IndexEntryType.OTHER.equals(scriptIndexEntry.getType())) {
@@ -168,9 +177,9 @@ public class Mother2SnesGame extends Mother2Game {
         }
 
         if (isSingleLine) {
-            return Optional.of(codeTreeParser.parseToGraph(this, offset, 0));
+            return Optional.of(codeTreeParser.parseToGraph(this, offset, 0, parseBudget));
         } else {
-            return Optional.of(codeTreeParser.parseToGraph(this, offset));
+            return Optional.of(codeTreeParser.parseToGraph(this, offset, parseBudget));
         }
     }
 
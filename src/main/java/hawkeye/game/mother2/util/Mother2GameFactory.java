@@ -23,8 +23,11 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 public class Mother2GameFactory {
     private static final String ROMTYPES_FILENAME = "config/romtypes.json";
@@ -38,7 +41,8 @@ public class Mother2GameFactory {
     private Mother2GbaItemMap mother2GbaItemMap;
 
     private Collection<ROMType> romTypes;
-    private final Map<String, CodeTreeParser> romTypeTextParsers = new HashMap<>();
+    private final Map<String, CodeTreeParser> romTypeTextParsers = new ConcurrentHashMap<>();
+    private final Map<String, Object> romTypeTextParserLocks = new ConcurrentHashMap<>();
 
     @Inject
     public Mother2GameFactory(
@@ -58,15 +62,32 @@ public class Mother2GameFactory {
 
     public Mother2Game createFromRom(ROM rom)
             throws UnrecognizedROMException, InvalidSyntaxTreeException, IOException, ROMAccessException {
+        return createFromRom(rom, Optional.empty());
+    }
+
+    /**
+     * Identifies the ROM in two steps: its size rules out ROM types first, and only then is its md5sum used to pick
+     * among the remaining ones. The md5sum is only calculated if it isn't already known and some type is left.
+     */
+    public Mother2Game createFromRom(ROM rom, Optional<String> knownMd5sum)
+            throws UnrecognizedROMException, InvalidSyntaxTreeException, IOException, ROMAccessException {
+        List<ROMType> candidateRomTypes = romTypes.stream()
+                .filter(romType -> romType.isPossibleSize(rom.size()))
+                .collect(Collectors.toList());
+        if (candidateRomTypes.isEmpty()) {
+            throw new UnrecognizedROMException("Could not recognize ROM of size " + rom.size());
+        }
+
+        String md5sum = knownMd5sum.isPresent() ? knownMd5sum.get() : rom.getMd5sum();
         ROMType romType = null;
-        for (ROMType tmpRomType : romTypes) {
-            if (rom.getMd5sum().equals(tmpRomType.getMd5sum())) {
+        for (ROMType tmpRomType : candidateRomTypes) {
+            if (md5sum.equals(tmpRomType.getMd5sum())) {
                 romType = tmpRomType;
                 break;
             }
         }
         if (romType == null) {
-            throw new UnrecognizedROMException("Could not recognize ROM with md5 " + rom.getMd5sum());
+            throw new UnrecognizedROMException("Could not recognize ROM with md5 " + md5sum);
         }
 
         CodeTreeParser codeTreeParser = getParserForRomType(rom, romType);
@@ -81,12 +102,28 @@ public class Mother2GameFactory {
         }
     }
 
+    /*
+    ROMs can be loaded concurrently, so parsers are built under a lock per ROM type. Two copies of the same ROM share
+    one parser, while different ROM types can still be set up at the same time.
+    */
     private CodeTreeParser getParserForRomType(ROM rom, ROMType romType) throws FileNotFoundException, UnsupportedEncodingException, InvalidSyntaxTreeException, ROMAccessException {
         CodeTreeParser cachedParser = romTypeTextParsers.get(romType.getMd5sum());
         if (cachedParser != null) {
             return cachedParser;
         }
 
+        Object lock = romTypeTextParserLocks.computeIfAbsent(romType.getMd5sum(), md5sum -> new Object());
+        synchronized (lock) {
+            cachedParser = romTypeTextParsers.get(romType.getMd5sum());
+            if (cachedParser != null) {
+                return cachedParser;
+            }
+            return createParserForRomType(rom, romType);
+        }
+    }
+
+    private CodeTreeParser createParserForRomType(ROM rom, ROMType romType) throws FileNotFoundException, UnsupportedEncodingException, InvalidSyntaxTreeException, ROMAccessException {
+
         TextTable textTable = textTableFactory.createFromFile(
                 "config/" + romType.getFiles().get(CHARACTER_TABLE_FILENAME_KEY));
         Collection<ControlCode> controlCodes = controlCodeDeserializationFactory.createCollectionFromFile(
@@ -98,7 +135,7 @@ public class Mother2GameFactory {
         }
 
         TextSyntaxTreeNode syntaxTree = codeSyntaxTreeFactory.createTree(controlCodes, textTable);
-        CodeTreeParser newParser = new CodeTreeParser(syntaxTree);
+        CodeTreeParser newParser = new CodeTreeParser(codeSyntaxTreeFactory.compile(syntaxTree));
         romTypeTextParsers.put(romType.getMd5sum(), newParser);
         return newParser;
     }
@@ -0,0 +1,16 @@
+package hawkeye.graph.model;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Lines of graphs that could not be compared node for node, lined up as well as possible. Each row holds an index
+ * into every graph's values, or null where that graph has no line matching the others.
+ */
+@Value
+public class Alignment {
+    private List<List<Integer>> rows;
+    // Rows with a line from every graph
+    private int numMatchedRows;
+}
@@ -0,0 +1,237 @@
+package hawkeye.graph.model;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import java.util.*;
+
+/**
+ * An immutable directed graph stored in compressed sparse row form: the vertices of node {@code n} are
+ * {@code vertexTargets[vertexOffsets[n]]} up to {@code vertexTargets[vertexOffsets[n + 1]]}. This takes a fraction of
+ * the memory of a {@link GraphNode} graph and can be walked without chasing pointers.
+ *
+ * Nodes are numbered in the order a depth-first walk from the root first reaches them, popping vertices off a stack in
+ * reverse order, so two graphs with the same shape always have the same offsets and targets.
+ */
+public final class CompactGraph<T> {
+    public static final int ROOT = 0;
+
+    private static final HashFunction FINGERPRINT_HASH_FUNCTION = Hashing.murmur3_128();
+
+    private final int[] vertexOffsets;
+    private final int[] vertexTargets;
+    private final Object[] values;
+    private volatile HashCode fingerprint;
+
+    private CompactGraph(int[] vertexOffsets, int[] vertexTargets, Object[] values) {
+        this.vertexOffsets = vertexOffsets;
+        this.vertexTargets = vertexTargets;
+        this.values = values;
+    }
+
+    public static <T> CompactGraph<T> of(GraphNode<T> root) {
+        Builder<T> builder = builder();
+        Map<GraphNode<T>, Integer> nodeIds = new IdentityHashMap<>();
+        Stack<GraphNode<T>> recursionStack = new Stack<>();
+        nodeIds.put(root, builder.addNode(root.getValue()));
+        recursionStack.add(root);
+
+        while (!recursionStack.isEmpty()) {
+            GraphNode<T> node = recursionStack.pop();
+            int nodeId = nodeIds.get(node);
+            for (GraphNode<T> vertex : node.getVertices()) {
+                Integer vertexId = nodeIds.get(vertex);
+                if (vertexId == null) {
+                    vertexId = builder.addNode(vertex.getValue());
+                    nodeIds.put(vertex, vertexId);
+                    recursionStack.add(vertex);
+                }
+                builder.addVertex(nodeId, vertexId);
+            }
+        }
+
+        return builder.build();
+    }
+
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T getValue(int node) {
+        return (T) values[node];
+    }
+
+    /** Returns the values of every node, in node order */
+    @SuppressWarnings("unchecked")
+    public List<T> getValues() {
+        return Collections.unmodifiableList(Arrays.asList((T[]) values));
+    }
+
+    public int getNumVertices(int node) {
+        return vertexOffsets[node + 1] - vertexOffsets[node];
+    }
+
+    public int getVertex(int node, int index) {
+        if ((index < 0) || (index >= getNumVertices(node))) {
+            throw new IndexOutOfBoundsException("Node " + node + " has no vertex " + index);
+        }
+        return vertexTargets[vertexOffsets[node] + index];
+    }
+
+    /** Returns true if both graphs have the same shape, ignoring their values */
+    public boolean hasSameStructure(CompactGraph<?> other) {
+        return Arrays.equals(vertexOffsets, other.vertexOffsets) && Arrays.equals(vertexTargets, other.vertexTargets);
+    }
+
+    /**
+     * Hashes the shape and values of the graph. Two graphs have the same fingerprint exactly when they have the same
+     * structure and values (barring hash collisions). The fingerprint is only computed once.
+     */
+    public HashCode fingerprint() {
+        if (fingerprint == null) {
+            fingerprint = computeFingerprint();
+        }
+        return fingerprint;
+    }
+
+    private HashCode computeFingerprint() {
+        Hasher hasher = FINGERPRINT_HASH_FUNCTION.newHasher();
+        hasher.putInt(values.length);
+        for (int node = 0; node < values.length; ++node) {
+            Object value = values[node];
+            if (value == null) {
+                hasher.putBoolean(false);
+            } else {
+                String string = value.toString();
+                hasher.putBoolean(true).putInt(string.length()).putString(string);
+            }
+
+            hasher.putInt(getNumVertices(node));
+            for (int i = vertexOffsets[node]; i < vertexOffsets[node + 1]; ++i) {
+                hasher.putInt(vertexTargets[i]);
+            }
+        }
+        return hasher.hash();
+    }
+
+    public GraphNode<T> toGraph() {
+        List<GraphNode<T>> nodes = new ArrayList<>(values.length);
+        for (int node = 0; node < values.length; ++node) {
+            nodes.add(new GraphNode<>(getValue(node)));
+        }
+        for (int node = 0; node < values.length; ++node) {
+            for (int i = vertexOffsets[node]; i < vertexOffsets[node + 1]; ++i) {
+                nodes.get(node).addVertex(nodes.get(vertexTargets[i]));
+            }
+        }
+        return nodes.get(ROOT);
+    }
+
+    /**
+     * Builds a graph from nodes and vertices added in any order. The first node added is the root, and nodes that
+     * cannot be reached from it are dropped.
+     */
+    public static class Builder<T> {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private Object[] values = new Object[INITIAL_CAPACITY];
+        private int numNodes = 0;
+        private int[] vertexSources = new int[INITIAL_CAPACITY];
+        private int[] vertexTargets = new int[INITIAL_CAPACITY];
+        private int numVertices = 0;
+
+        private Builder() {
+        }
+
+        /** Adds a node, and returns its id within this builder */
+        public int addNode(T value) {
+            if (numNodes == values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[numNodes] = value;
+            return numNodes++;
+        }
+
+        public void addVertex(int from, int to) {
+            if ((from < 0) || (from >= numNodes) || (to < 0) || (to >= numNodes)) {
+                throw new IndexOutOfBoundsException("Cannot add vertex from " + from + " to " + to);
+            }
+            if (numVertices == vertexSources.length) {
+                vertexSources = Arrays.copyOf(vertexSources, vertexSources.length * 2);
+                vertexTargets = Arrays.copyOf(vertexTargets, vertexTargets.length * 2);
+            }
+            vertexSources[numVertices] = from;
+            vertexTargets[numVertices] = to;
+            ++numVertices;
+        }
+
+        public CompactGraph<T> build() {
+            if (numNodes == 0) {
+                throw new IllegalStateException("Cannot build a graph without a root node");
+            }
+
+            // Group the vertices by source node, keeping the order they were added in
+            int[] offsets = new int[numNodes + 1];
+            for (int i = 0; i < numVertices; ++i) {
+                ++offsets[vertexSources[i] + 1];
+            }
+            for (int node = 0; node < numNodes; ++node) {
+                offsets[node + 1] += offsets[node];
+            }
+            int[] targets = new int[numVertices];
+            int[] nextTargetIndex = Arrays.copyOf(offsets, numNodes);
+            for (int i = 0; i < numVertices; ++i) {
+                targets[nextTargetIndex[vertexSources[i]]++] = vertexTargets[i];
+            }
+
+            // Renumber the nodes in the order a depth-first walk from the root reaches them
+            int[] newIds = new int[numNodes];
+            Arrays.fill(newIds, -1);
+            int[] oldIds = new int[numNodes];
+            int numReachableNodes = 0;
+            int[] recursionStack = new int[numVertices + 1];
+            int recursionStackSize = 0;
+            recursionStack[recursionStackSize++] = ROOT;
+            while (recursionStackSize > 0) {
+                int node = recursionStack[--recursionStackSize];
+                if (newIds[node] != -1) {
+                    continue;
+                }
+                newIds[node] = numReachableNodes;
+                oldIds[numReachableNodes] = node;
+                ++numReachableNodes;
+
+                for (int i = offsets[node]; i < offsets[node + 1]; ++i) {
+                    recursionStack[recursionStackSize++] = targets[i];
+                }
+            }
+
+            Object[] compactValues = new Object[numReachableNodes];
+            int[] compactOffsets = new int[numReachableNodes + 1];
+            int numReachableVertices = 0;
+            for (int newId = 0; newId < numReachableNodes; ++newId) {
+                int oldId = oldIds[newId];
+                compactValues[newId] = values[oldId];
+                numReachableVertices += offsets[oldId + 1] - offsets[oldId];
+                compactOffsets[newId + 1] = numReachableVertices;
+            }
+            int[] compactTargets = new int[numReachableVertices];
+            for (int newId = 0; newId < numReachableNodes; ++newId) {
+                int oldId = oldIds[newId];
+                int compactIndex = compactOffsets[newId];
+                for (int i = offsets[oldId]; i < offsets[oldId + 1]; ++i) {
+                    compactTargets[compactIndex++] = newIds[targets[i]];
+                }
+            }
+
+            return new CompactGraph<>(compactOffsets, compactTargets, compactValues);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package hawkeye.graph.model;
 
+import com.google.common.hash.HashCode;
 import lombok.Value;
 
 import java.util.List;
@@ -11,4 +12,10 @@ public class GraphComparison<T> {
     private boolean isIsomorphicComparison;
     private Optional<GraphNode<Integer>> structure;
     private List<List<T>> values;
+    /** True if every compared graph has the same fingerprint, i.e. the same structure and values */
+    private boolean isIdentical;
+    /** Combined fingerprint of the compared graphs, in order */
+    private HashCode fingerprint;
+    /** How the lines of non-isomorphic graphs pair up, if they do at all */
+    private Optional<Alignment> alignment;
 }
@@ -4,15 +4,16 @@ import lombok.Getter;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
+/**
+ * A node in a directed, possibly cyclic graph. Nodes are compared by reference, so code walking a graph should keep
+ * track of visited nodes with an identity-based map or set.
+ */
 public class GraphNode<T> {
-    private final UUID id;
     @Getter private T value;
     @Getter private List<GraphNode<T>> vertices;
 
     public GraphNode(T value) {
-        id = UUID.randomUUID();
         this.value = value;
         vertices = new ArrayList<>();
     }
@@ -20,14 +21,4 @@ public class GraphNode<T> {
     public void addVertex(GraphNode<T> node) {
         vertices.add(node);
     }
-
-    @Override
-    public boolean equals(Object obj) {
-        return (obj != null) && (this.hashCode() == obj.hashCode());
-    }
-
-    @Override
-    public int hashCode() {
-        return this.id.hashCode();
-    }
 }
@@ -1,106 +1,175 @@
 package hawkeye.graph.util;
 
-import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import hawkeye.graph.model.Alignment;
+import hawkeye.graph.model.CompactGraph;
 import hawkeye.graph.model.GraphComparison;
 import hawkeye.graph.model.GraphNode;
-import lombok.Value;
 
 import java.util.*;
 import java.util.stream.Collectors;
 
 public class GraphComparer {
-    @Value
-    private static class RecursionStackEntry<T> {
-        private GraphNode<Integer> previous;
-        private GraphNode<T> next1, next2;
-    }
+    private final SequenceAligner sequenceAligner = new SequenceAligner();
 
     public <T> GraphComparison<T> compare(List<GraphNode<T>> graphs) {
-        if (graphs.size() != 2) {
-            throw new IllegalArgumentException("Can only compare 2 graphs");
+        return compareCompact(graphs.stream().map(CompactGraph::of).collect(Collectors.toList()));
+    }
+
+    /**
+     * Compares any number of graphs at once. Compact graphs are numbered in the order they would be walked, so graphs
+     * are isomorphic exactly when their offsets and targets are equal, and their values then line up node for node.
+     */
+    public <T> GraphComparison<T> compareCompact(List<CompactGraph<T>> graphs) {
+        if (graphs.isEmpty()) {
+            throw new IllegalArgumentException("Cannot compare an empty list of graphs");
         }
 
         boolean anyEmptyGraphs = false;
         boolean allEmptyGraphs = true;
-        for (GraphNode<T> graph : graphs) {
-            boolean isEmpty = (graph.getValue() == null) && (graph.getVertices().size() == 0);
+        for (CompactGraph<T> graph : graphs) {
+            boolean isEmpty = (graph.getValue(CompactGraph.ROOT) == null) && (graph.getNumVertices(CompactGraph.ROOT) == 0);
             anyEmptyGraphs |= isEmpty;
             allEmptyGraphs &= isEmpty;
         }
 
+        List<HashCode> fingerprints = graphs.stream().map(CompactGraph::fingerprint).collect(Collectors.toList());
+        boolean isIdentical = fingerprints.stream().distinct().count() == 1;
+        HashCode fingerprint = Hashing.combineOrdered(fingerprints);
+
         if (allEmptyGraphs) {
-            return new GraphComparison<>(true, false, Optional.empty(), Collections.EMPTY_LIST);
-        } else if (anyEmptyGraphs) {
-            return compareNonisomorphic(graphs);
+            return new GraphComparison<>(true, false, Optional.empty(), Collections.EMPTY_LIST, true, fingerprint,
+                    Optional.empty());
         }
 
-        return compare(graphs.get(0), graphs.get(1));
+        List<List<T>> values = graphs.stream().map(CompactGraph::getValues).collect(Collectors.toList());
+        CompactGraph<T> firstGraph = graphs.get(0);
+        if (anyEmptyGraphs) {
+            return new GraphComparison<>(false, false, Optional.empty(), values, false, fingerprint,
+                    Optional.empty());
+        } else if (!graphs.stream().allMatch(firstGraph::hasSameStructure)) {
+            return new GraphComparison<>(false, false, Optional.empty(), values, false, fingerprint,
+                    Optional.of(align(graphs)));
+        }
+
+        return new GraphComparison<>(false, true, Optional.of(createStructure(firstGraph)), values, isIdentical,
+                fingerprint, Optional.empty());
     }
 
-    private <T> GraphComparison<T> compare(GraphNode<T> graph1, GraphNode<T> graph2) {
-        int entryId = 0;
-        List<T> values1 = new ArrayList<>();
-        List<T> values2 = new ArrayList<>();
-        GraphNode<Integer> structure = new GraphNode<>(-1);
+    /*
+    Nodes are paired up one for one for as long as the graphs' structures agree. After that, every graph's remaining
+    values are aligned against the first graph's, and the pairwise alignments are merged into rows keyed on the first
+    graph's lines.
+    */
+    private <T> Alignment align(List<CompactGraph<T>> graphs) {
+        int commonPrefixSize = getCommonStructurePrefixSize(graphs);
+        List<List<Integer>> rows = new ArrayList<>();
+        for (int node = 0; node < commonPrefixSize; ++node) {
+            rows.add(Collections.nCopies(graphs.size(), node));
+        }
+        int numMatchedRows = commonPrefixSize;
+
+        List<T> firstValues = graphs.get(0).getValues();
+        int numFirstValues = firstValues.size() - commonPrefixSize;
+        List<int[]> matches = new ArrayList<>(graphs.size());
+        List<List<List<Integer>>> insertionsBefore = new ArrayList<>(graphs.size());
+        for (CompactGraph<T> graph : graphs.subList(1, graphs.size())) {
+            List<T> values = graph.getValues();
+            int[] graphMatches = new int[numFirstValues];
+            Arrays.fill(graphMatches, SequenceAligner.GAP);
+            List<List<Integer>> graphInsertionsBefore = new ArrayList<>(numFirstValues + 1);
+            for (int i = 0; i <= numFirstValues; ++i) {
+                graphInsertionsBefore.add(new ArrayList<>());
+            }
 
-        Map<GraphNode<T>, GraphNode<Integer>> alreadyVisitedNodes1 = new HashMap<>();
-        Map<GraphNode<T>, GraphNode<Integer>> alreadyVisitedNodes2 = new HashMap<>();
-
-        Stack<RecursionStackEntry<T>> recursionStack = new Stack<>();
-        recursionStack.add(new RecursionStackEntry(structure, graph1, graph2));
-
-        while (!recursionStack.isEmpty()) {
-            RecursionStackEntry<T> recursionStackEntry = recursionStack.pop();
-            GraphNode<Integer> previous = recursionStackEntry.getPrevious();
-            GraphNode<T> next1 = recursionStackEntry.getNext1();
-            GraphNode<T> next2 = recursionStackEntry.getNext2();
-
-            GraphNode<Integer> alreadyVisitedNode1 = alreadyVisitedNodes1.get(next1);
-            GraphNode<Integer> alreadyVisitedNode2 = alreadyVisitedNodes2.get(next2);
-            if ((alreadyVisitedNode1 == null) ^ (alreadyVisitedNode2 == null)) {
-                // If we've already visited next1 but not next2 or vice versa, that implies that the graphs are not isomorphic
-                return compareNonisomorphic(ImmutableList.of(graph1, graph2));
-            } else if (alreadyVisitedNode1 != null) {
-                // If we've visited both nodes, and...
-                if (alreadyVisitedNode1.equals(alreadyVisitedNode2)) {
-                    // ...they're the same, link the previous node to the already visited node
-                    previous.addVertex(alreadyVisitedNode1);
+            int nextFirstValue = 0;
+            for (int[] pair : sequenceAligner.align(
+                    firstValues.subList(commonPrefixSize, firstValues.size()),
+                    values.subList(commonPrefixSize, values.size()))) {
+                if (pair[0] == SequenceAligner.GAP) {
+                    graphInsertionsBefore.get(nextFirstValue).add(commonPrefixSize + pair[1]);
                 } else {
-                    // ...they're not the same, this implies that the graphs are ont isomorphic
-                    return compareNonisomorphic(ImmutableList.of(graph1, graph2));
+                    if (pair[1] != SequenceAligner.GAP) {
+                        graphMatches[pair[0]] = commonPrefixSize + pair[1];
+                    }
+                    nextFirstValue = pair[0] + 1;
                 }
-            } else {
-                // If we've visited neither next1 nor next2 already, then...
+            }
 
-                if (next1.getVertices().size() != next2.getVertices().size()) {
-                    // ...if they have different numbers of vertices, this implies the graphs are not isomorphic
-                    return compareNonisomorphic(ImmutableList.of(graph1, graph2));
-                }
+            matches.add(graphMatches);
+            insertionsBefore.add(graphInsertionsBefore);
+        }
 
-                // ...if they have the sane number of vertices, continue with the recursion
-                GraphNode<Integer> nextNode = new GraphNode<>(entryId);
-                ++entryId;
-                previous.addVertex(nextNode);
+        for (int i = 0; i <= numFirstValues; ++i) {
+            for (int graph = 1; graph < graphs.size(); ++graph) {
+                for (Integer insertion : insertionsBefore.get(graph - 1).get(i)) {
+                    List<Integer> row = new ArrayList<>(Collections.nCopies(graphs.size(), (Integer) null));
+                    row.set(graph, insertion);
+                    rows.add(row);
+                }
+            }
 
-                values1.add(next1.getValue());
-                values2.add(next2.getValue());
+            if (i < numFirstValues) {
+                List<Integer> row = new ArrayList<>(graphs.size());
+                row.add(commonPrefixSize + i);
+                boolean isMatched = true;
+                for (int[] graphMatches : matches) {
+                    row.add((graphMatches[i] == SequenceAligner.GAP) ? null : graphMatches[i]);
+                    isMatched &= graphMatches[i] != SequenceAligner.GAP;
+                }
+                rows.add(row);
+                if (isMatched) {
+                    ++numMatchedRows;
+                }
+            }
+        }
 
-                alreadyVisitedNodes1.put(next1, nextNode);
-                alreadyVisitedNodes2.put(next2, nextNode);
+        return new Alignment(rows, numMatchedRows);
+    }
 
-                Iterator<GraphNode<T>> iterator1 = next1.getVertices().iterator();
-                Iterator<GraphNode<T>> iterator2 = next2.getVertices().iterator();
-                while (iterator1.hasNext() && iterator2.hasNext()) {
-                    recursionStack.add(new RecursionStackEntry<>(nextNode, iterator1.next(), iterator2.next()));
+    /*
+    The number of leading nodes whose vertices agree in every graph: the same number of them, and the same targets for
+    those that lead back to nodes already walked. Targets further along can still be numbered differently, as one
+    graph may have extra nodes in a branch that is walked earlier.
+    */
+    private <T> int getCommonStructurePrefixSize(List<CompactGraph<T>> graphs) {
+        int minimumSize = graphs.stream().mapToInt(CompactGraph::size).min().getAsInt();
+        CompactGraph<T> firstGraph = graphs.get(0);
+        for (int node = 0; node < minimumSize; ++node) {
+            for (CompactGraph<T> graph : graphs) {
+                if (graph.getNumVertices(node) != firstGraph.getNumVertices(node)) {
+                    return node;
+                }
+                for (int i = 0; i < graph.getNumVertices(node); ++i) {
+                    int target = graph.getVertex(node, i);
+                    int firstTarget = firstGraph.getVertex(node, i);
+                    if (((target <= node) || (firstTarget <= node)) && (target != firstTarget)) {
+                        return node;
+                    }
                 }
             }
         }
-
-        return new GraphComparison<>(false, true, Optional.of(structure), ImmutableList.of(values1, values2));
+        return minimumSize;
     }
 
-    private <T> GraphComparison<T> compareNonisomorphic(List<GraphNode<T>> graphs) {
-        List<List<T>> values = graphs.stream().map(GraphUtils::getAllValues).collect(Collectors.toList());
-        return new GraphComparison<>(false, false, Optional.empty(), values);
+    /**
+     * Builds the graph of value indexes the views render. Vertices are listed in the order the walk reaches them,
+     * which is the reverse of the order they were added in.
+     */
+    private GraphNode<Integer> createStructure(CompactGraph<?> graph) {
+        List<GraphNode<Integer>> nodes = new ArrayList<>(graph.size());
+        for (int node = 0; node < graph.size(); ++node) {
+            nodes.add(new GraphNode<>(node));
+        }
+        for (int node = 0; node < graph.size(); ++node) {
+            for (int i = graph.getNumVertices(node) - 1; i >= 0; --i) {
+                nodes.get(node).addVertex(nodes.get(graph.getVertex(node, i)));
+            }
+        }
+
+        GraphNode<Integer> structure = new GraphNode<>(-1);
+        structure.addVertex(nodes.get(CompactGraph.ROOT));
+        return structure;
     }
 }
@@ -1,5 +1,7 @@
 package hawkeye.graph.util;
 
+import com.google.common.hash.HashCode;
+import hawkeye.graph.model.CompactGraph;
 import hawkeye.graph.model.GraphNode;
 
 import java.util.*;
@@ -8,7 +10,7 @@ public class GraphUtils {
     public static <T> List<T> getAllValues(GraphNode<T> root) {
         List<T> result = new ArrayList<>();
 
-        Set<GraphNode<T>> alreadyVisitedNodes = new HashSet<>();
+        Set<GraphNode<T>> alreadyVisitedNodes = Collections.newSetFromMap(new IdentityHashMap<>());
         Stack<GraphNode<T>> recursionStack = new Stack<>();
         recursionStack.add(root);
 
@@ -26,4 +28,12 @@ public class GraphUtils {
 
         return result;
     }
+
+    /**
+     * Hashes the shape and values of a graph, handling cycles. Two graphs have the same fingerprint exactly when their
+     * values and edge order match (barring hash collisions).
+     */
+    public static <T> HashCode fingerprint(GraphNode<T> root) {
+        return CompactGraph.of(root).fingerprint();
+    }
 }
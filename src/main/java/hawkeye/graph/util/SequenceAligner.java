@@ -0,0 +1,206 @@
+package hawkeye.graph.util;
+
+import java.util.*;
+
+/**
+ * Aligns two sequences so that as many equal elements as possible are paired up, in order. Sequences are first trimmed
+ * of their common prefix and suffix, and what is left is diffed with Myers' O(ND) algorithm. If the sequences differ
+ * in more than {@link #MAXIMUM_EDIT_DISTANCE} places, elements that occur exactly once in both are used as anchors
+ * instead, and the stretches between anchors are aligned on their own.
+ */
+public class SequenceAligner {
+    public static final int GAP = -1;
+
+    private static final int MAXIMUM_EDIT_DISTANCE = 1024;
+
+    /**
+     * Returns the aligned pairs of indexes into {@code a} and {@code b}, in order. Elements that are not paired up
+     * appear in a pair with {@link #GAP}.
+     */
+    public <T> List<int[]> align(List<T> a, List<T> b) {
+        List<int[]> alignment = new ArrayList<>(Math.max(a.size(), b.size()));
+        align(a, 0, a.size(), b, 0, b.size(), alignment);
+        return alignment;
+    }
+
+    private <T> void align(List<T> a, int aStart, int aEnd, List<T> b, int bStart, int bEnd, List<int[]> alignment) {
+        while ((aStart < aEnd) && (bStart < bEnd) && Objects.equals(a.get(aStart), b.get(bStart))) {
+            alignment.add(new int[] {aStart++, bStart++});
+        }
+
+        int suffixLength = 0;
+        while ((aStart < aEnd - suffixLength) && (bStart < bEnd - suffixLength)
+                && Objects.equals(a.get(aEnd - suffixLength - 1), b.get(bEnd - suffixLength - 1))) {
+            ++suffixLength;
+        }
+
+        alignMiddle(a, aStart, aEnd - suffixLength, b, bStart, bEnd - suffixLength, alignment);
+
+        for (int i = suffixLength; i > 0; --i) {
+            alignment.add(new int[] {aEnd - i, bEnd - i});
+        }
+    }
+
+    private <T> void alignMiddle(List<T> a, int aStart, int aEnd, List<T> b, int bStart, int bEnd,
+                                 List<int[]> alignment) {
+        if ((aStart == aEnd) || (bStart == bEnd)) {
+            addGaps(aStart, aEnd, bStart, bEnd, alignment);
+        } else if (!diff(a, aStart, aEnd, b, bStart, bEnd, alignment)) {
+            alignOnUniqueAnchors(a, aStart, aEnd, b, bStart, bEnd, alignment);
+        }
+    }
+
+    private void addGaps(int aStart, int aEnd, int bStart, int bEnd, List<int[]> alignment) {
+        for (int i = aStart; i < aEnd; ++i) {
+            alignment.add(new int[] {i, GAP});
+        }
+        for (int i = bStart; i < bEnd; ++i) {
+            alignment.add(new int[] {GAP, i});
+        }
+    }
+
+    /*
+    Myers' greedy diff. Only the diagonals that round d can reach are kept for each round, so a diff of edit distance
+    D takes O(D^2) memory on top of O((N + M) D) time. Returns false without touching the alignment if the sequences
+    are further apart than MAXIMUM_EDIT_DISTANCE.
+    */
+    private <T> boolean diff(List<T> a, int aStart, int aEnd, List<T> b, int bStart, int bEnd,
+                             List<int[]> alignment) {
+        int n = aEnd - aStart;
+        int m = bEnd - bStart;
+        int maximumD = Math.min(n + m, MAXIMUM_EDIT_DISTANCE);
+
+        int[] v = new int[2 * maximumD + 3];
+        int vOffset = maximumD + 1;
+        List<int[]> trace = new ArrayList<>();
+
+        for (int d = 0; d <= maximumD; ++d) {
+            trace.add(Arrays.copyOfRange(v, vOffset - d - 1, vOffset + d + 2));
+
+            for (int k = -d; k <= d; k += 2) {
+                int x = ((k == -d) || ((k != d) && (v[vOffset + k - 1] < v[vOffset + k + 1])))
+                        ? v[vOffset + k + 1]
+                        : v[vOffset + k - 1] + 1;
+                int y = x - k;
+                while ((x < n) && (y < m) && Objects.equals(a.get(aStart + x), b.get(bStart + y))) {
+                    ++x;
+                    ++y;
+                }
+                v[vOffset + k] = x;
+
+                if ((x >= n) && (y >= m)) {
+                    backtrack(trace, n, m, aStart, bStart, alignment);
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private void backtrack(List<int[]> trace, int n, int m, int aStart, int bStart, List<int[]> alignment) {
+        Deque<int[]> reversedAlignment = new ArrayDeque<>();
+        int x = n;
+        int y = m;
+        for (int d = trace.size() - 1; d >= 0; --d) {
+            int[] v = trace.get(d);
+            int vOffset = d + 1;
+            int k = x - y;
+            int previousK = ((k == -d) || ((k != d) && (v[vOffset + k - 1] < v[vOffset + k + 1]))) ? k + 1 : k - 1;
+            int previousX = v[vOffset + previousK];
+            int previousY = previousX - previousK;
+
+            while ((x > previousX) && (y > previousY) && (x > 0) && (y > 0)) {
+                --x;
+                --y;
+                reversedAlignment.push(new int[] {aStart + x, bStart + y});
+            }
+            if (d > 0) {
+                if (x == previousX) {
+                    reversedAlignment.push(new int[] {GAP, bStart + previousY});
+                } else {
+                    reversedAlignment.push(new int[] {aStart + previousX, GAP});
+                }
+                x = previousX;
+                y = previousY;
+            }
+        }
+        alignment.addAll(reversedAlignment);
+    }
+
+    /*
+    Pairs up elements that occur exactly once in each sequence, keeping the longest run of them that is in the same
+    order in both, then aligns each stretch between two anchors separately.
+    */
+    private <T> void alignOnUniqueAnchors(List<T> a, int aStart, int aEnd, List<T> b, int bStart, int bEnd,
+                                          List<int[]> alignment) {
+        Map<T, int[]> occurrences = new HashMap<>();
+        for (int i = aStart; i < aEnd; ++i) {
+            int[] occurrence = occurrences.computeIfAbsent(a.get(i), value -> new int[] {0, 0, GAP});
+            ++occurrence[0];
+            occurrence[2] = i;
+        }
+        List<int[]> candidates = new ArrayList<>();
+        for (int i = bStart; i < bEnd; ++i) {
+            int[] occurrence = occurrences.get(b.get(i));
+            if (occurrence != null) {
+                ++occurrence[1];
+            }
+        }
+        for (int i = bStart; i < bEnd; ++i) {
+            int[] occurrence = occurrences.get(b.get(i));
+            if ((occurrence != null) && (occurrence[0] == 1) && (occurrence[1] == 1)) {
+                candidates.add(new int[] {occurrence[2], i});
+            }
+        }
+        candidates.sort(Comparator.comparingInt(candidate -> candidate[0]));
+
+        List<int[]> anchors = longestIncreasingRun(candidates);
+        if (anchors.isEmpty()) {
+            addGaps(aStart, aEnd, bStart, bEnd, alignment);
+            return;
+        }
+
+        int aPosition = aStart;
+        int bPosition = bStart;
+        for (int[] anchor : anchors) {
+            align(a, aPosition, anchor[0], b, bPosition, anchor[1], alignment);
+            alignment.add(anchor);
+            aPosition = anchor[0] + 1;
+            bPosition = anchor[1] + 1;
+        }
+        align(a, aPosition, aEnd, b, bPosition, bEnd, alignment);
+    }
+
+    // Patience sorting over the second index of candidates that are already ordered by their first index
+    private List<int[]> longestIncreasingRun(List<int[]> candidates) {
+        int[] pileTops = new int[candidates.size()];
+        int[] predecessors = new int[candidates.size()];
+        int numPiles = 0;
+
+        for (int i = 0; i < candidates.size(); ++i) {
+            int value = candidates.get(i)[1];
+            int low = 0;
+            int high = numPiles;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (candidates.get(pileTops[middle])[1] < value) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            predecessors[i] = (low > 0) ? pileTops[low - 1] : GAP;
+            pileTops[low] = i;
+            if (low == numPiles) {
+                ++numPiles;
+            }
+        }
+
+        Deque<int[]> run = new ArrayDeque<>(numPiles);
+        for (int i = (numPiles > 0) ? pileTops[numPiles - 1] : GAP; i != GAP; i = predecessors[i]) {
+            run.push(candidates.get(i));
+        }
+        return new ArrayList<>(run);
+    }
+}
@@ -0,0 +1,24 @@
+package hawkeye.parse.model;
+
+import com.google.common.collect.ImmutableList;
+import lombok.Value;
+
+/**
+ * A straight run of decoded instructions, ending with the first one that is terminal or has references.
+ */
+@Value
+public class BasicBlock {
+    private ImmutableList<DecodedInstruction> instructions;
+
+    public long getStartOffset() {
+        return instructions.get(0).getOffset();
+    }
+
+    public int size() {
+        return instructions.size();
+    }
+
+    public DecodedInstruction get(int index) {
+        return instructions.get(index);
+    }
+}
@@ -0,0 +1,31 @@
+package hawkeye.parse.model;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Basic blocks of one game, keyed by their start offset. Blocks do not depend on the call stack, so one decoded block
+ * serves every parse that reaches its offset. There is at most one block per ROM offset, so the cache is bounded by
+ * the amount of text in the ROM.
+ */
+public class BasicBlockCache {
+    private final ConcurrentMap<Long, BasicBlock> blocks = new ConcurrentHashMap<>();
+
+    public Optional<BasicBlock> get(long offset) {
+        return Optional.ofNullable(blocks.get(offset));
+    }
+
+    public BasicBlock put(BasicBlock basicBlock) {
+        BasicBlock existingBlock = blocks.putIfAbsent(basicBlock.getStartOffset(), basicBlock);
+        return (existingBlock != null) ? existingBlock : basicBlock;
+    }
+
+    public int size() {
+        return blocks.size();
+    }
+
+    public void clear() {
+        blocks.clear();
+    }
+}
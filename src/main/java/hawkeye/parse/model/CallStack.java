@@ -0,0 +1,91 @@
+package hawkeye.parse.model;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable stack of return offsets. Every stack is built by pushing onto {@link #EMPTY} and is interned, so equal
+ * stacks share their tails and can be pushed, hashed and compared in constant time.
+ */
+public final class CallStack {
+    private static final Interner<CallStack> INTERNER = Interners.newWeakInterner();
+
+    public static final CallStack EMPTY = new CallStack();
+
+    private final long top;
+    private final CallStack rest;
+    private final int depth;
+    private final int hash;
+
+    private CallStack() {
+        this.top = 0;
+        this.rest = null;
+        this.depth = 0;
+        this.hash = 0;
+    }
+
+    private CallStack(long top, CallStack rest) {
+        this.top = top;
+        this.rest = rest;
+        this.depth = rest.depth + 1;
+        this.hash = 31 * rest.hash + Long.hashCode(top);
+    }
+
+    public CallStack push(long offset) {
+        return INTERNER.intern(new CallStack(offset, this));
+    }
+
+    public long peek() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("Cannot peek an empty call stack");
+        }
+        return top;
+    }
+
+    public CallStack pop() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("Cannot pop an empty call stack");
+        }
+        return rest;
+    }
+
+    public boolean isEmpty() {
+        return rest == null;
+    }
+
+    public int size() {
+        return depth;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        } else if (!(obj instanceof CallStack)) {
+            return false;
+        }
+
+        // Tails are always interned, so comparing them by reference is enough
+        CallStack other = (CallStack) obj;
+        return (hash == other.hash) && (top == other.top) && (rest == other.rest);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder stringBuilder = new StringBuilder("[");
+        for (CallStack stack = this; !stack.isEmpty(); stack = stack.rest) {
+            stringBuilder.append(String.format("%X", stack.top));
+            if (!stack.rest.isEmpty()) {
+                stringBuilder.append(", ");
+            }
+        }
+        return stringBuilder.append("]").toString();
+    }
+}
@@ -0,0 +1,16 @@
+package hawkeye.parse.model;
+
+/**
+ * A flag that can be raised from any thread to stop the parses that share it at their next budget check.
+ */
+public class CancellationToken {
+    private volatile boolean isCancelled = false;
+
+    public void cancel() {
+        isCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return isCancelled;
+    }
+}
@@ -0,0 +1,39 @@
+package hawkeye.parse.model;
+
+import hawkeye.config.model.ControlCode;
+
+/**
+ * A {@link TextSyntaxTreeNode} trie flattened into a single transition table. State 0 is the root, and the state
+ * reached from state s by reading byte b is stored at index s * 256 + b.
+ */
+public class CompiledSyntaxTree {
+    public static final int ROOT_STATE = 0;
+    public static final int NO_STATE = -1;
+    public static final int ALPHABET_SIZE = 256;
+
+    private final int[] transitions;
+    private final ControlCode[] controlCodes;
+    private final boolean[] hasChildren;
+
+    public CompiledSyntaxTree(int[] transitions, ControlCode[] controlCodes, boolean[] hasChildren) {
+        this.transitions = transitions;
+        this.controlCodes = controlCodes;
+        this.hasChildren = hasChildren;
+    }
+
+    public int getNumStates() {
+        return controlCodes.length;
+    }
+
+    public int getTransition(int state, int value) {
+        return transitions[state * ALPHABET_SIZE + value];
+    }
+
+    public ControlCode getControlCode(int state) {
+        return controlCodes[state];
+    }
+
+    public boolean hasChildren(int state) {
+        return hasChildren[state];
+    }
+}
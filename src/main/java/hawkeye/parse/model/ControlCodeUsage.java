@@ -1,10 +1,32 @@
 package hawkeye.parse.model;
 
 import hawkeye.config.model.ControlCode;
+import hawkeye.rom.util.ROMSlice;
 import lombok.Value;
 
 @Value
 public class ControlCodeUsage {
     private ControlCode controlCode;
-    private int[] parameters;
+    private ROMSlice parameterSlice;
+
+    public ControlCodeUsage(ControlCode controlCode, ROMSlice parameterSlice) {
+        this.controlCode = controlCode;
+        this.parameterSlice = parameterSlice;
+    }
+
+    public ControlCodeUsage(ControlCode controlCode, int[] parameters) {
+        this(controlCode, ROMSlice.of(parameters));
+    }
+
+    public int getParametersLength() {
+        return parameterSlice.length();
+    }
+
+    public int getParameter(int index) {
+        return parameterSlice.get(index);
+    }
+
+    public int[] getParameters() {
+        return parameterSlice.toArray();
+    }
 }
@@ -0,0 +1,15 @@
+package hawkeye.parse.model;
+
+import lombok.Value;
+
+/**
+ * A control code usage decoded at a fixed ROM offset. Nothing in it depends on the call stack it was reached with.
+ */
+@Value
+public class DecodedInstruction {
+    private long offset;
+    private ControlCodeUsage controlCodeUsage;
+    private long nextOffset;
+    // Offsets of the pointers this instruction references, empty if it has no references
+    private long[] referencePointerOffsets;
+}
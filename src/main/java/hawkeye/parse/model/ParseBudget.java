@@ -0,0 +1,40 @@
+package hawkeye.parse.model;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits on a single parser invocation. Every invocation tracks its own usage, so a budget can be shared between
+ * script index entries and each one still gets the full allowance.
+ */
+@Value
+@Builder
+public class ParseBudget {
+    public static final long UNLIMITED = Long.MAX_VALUE;
+
+    public static final long DEFAULT_MAXIMUM_NANOS = TimeUnit.MINUTES.toNanos(3);
+
+    // Each budget gets its own cancellation token, so cancelling one parse never affects any other
+    public static ParseBudget createUnlimited() {
+        return ParseBudget.builder()
+                .maximumNodes(UNLIMITED)
+                .maximumNanos(UNLIMITED)
+                .cancellationToken(new CancellationToken())
+                .build();
+    }
+
+    public static ParseBudget createDefault() {
+        return ParseBudget.builder()
+                .maximumNodes(UNLIMITED)
+                .maximumNanos(DEFAULT_MAXIMUM_NANOS)
+                .cancellationToken(new CancellationToken())
+                .build();
+    }
+
+    private long maximumNodes;
+    private long maximumNanos;
+    @NonNull private CancellationToken cancellationToken;
+}
@@ -0,0 +1,9 @@
+package hawkeye.parse.model;
+
+import lombok.Value;
+
+@Value
+public class ParserState {
+    private long offset;
+    private CallStack callStack;
+}
@@ -0,0 +1,76 @@
+package hawkeye.parse.model;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import hawkeye.graph.model.GraphNode;
+import lombok.Value;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Fully parsed subgraphs of one game, keyed by the parser state they were parsed from. Entries are only added once
+ * their graph is complete and no longer changes, so they can be shared between script index entries and threads.
+ * The least recently used entries are evicted once the cache is full.
+ */
+public class SubgraphCache {
+    @Value
+    public static class ParsedNode {
+        private ParserState parserState;
+        private GraphNode<ControlCodeUsage> node;
+    }
+
+    @Value
+    public static class Entry {
+        private GraphNode<ControlCodeUsage> subgraph;
+        // How many references deep the parser had to go to build the subgraph
+        private int depth;
+        // Every node of the subgraph along with the parser state it was parsed from, in the order they were parsed
+        private List<ParsedNode> parsedNodes;
+    }
+
+    public static final long DEFAULT_MAXIMUM_SIZE = 10000;
+
+    private final Cache<ParserState, Entry> cache;
+
+    public SubgraphCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public SubgraphCache(long maximumSize) {
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    public Optional<Entry> get(ParserState parserState) {
+        return Optional.ofNullable(cache.getIfPresent(parserState));
+    }
+
+    public void put(ParserState parserState, GraphNode<ControlCodeUsage> subgraph, int depth,
+                    List<ParsedNode> parsedNodes) {
+        cache.put(parserState, new Entry(subgraph, depth, parsedNodes));
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+}
@@ -3,6 +3,7 @@ package hawkeye.parse.model;
 import hawkeye.config.model.ControlCode;
 import lombok.Getter;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -28,6 +29,10 @@ public class TextSyntaxTreeNode {
         return Optional.ofNullable(children.get(key));
     }
 
+    public Map<Integer, TextSyntaxTreeNode> getChildren() {
+        return Collections.unmodifiableMap(children);
+    }
+
     public void addChild(int key, TextSyntaxTreeNode value) {
         children.put(key, value);
     }
@@ -0,0 +1,44 @@
+package hawkeye.parse.model;
+
+import com.google.common.collect.ImmutableList;
+import hawkeye.config.model.ControlCode;
+
+import java.util.Optional;
+
+/**
+ * Why the parser stopped following a script early. Each reason is recorded in the parsed graph as its own terminal
+ * control code, so truncated output can be told apart from scripts that really end there.
+ */
+public enum TruncationReason {
+    MAXIMUM_RECURSION_DEPTH(-1, "Reached maximum recursion depth", Optional.empty()),
+    MAXIMUM_NODES(-2, "Reached maximum number of parsed nodes", Optional.of("[TRUNCATED: too many nodes]")),
+    MAXIMUM_TIME(-3, "Reached maximum parse time", Optional.of("[TRUNCATED: took too long]")),
+    CANCELLED(-4, "Parsing was cancelled", Optional.of("[TRUNCATED: cancelled]"));
+
+    private final ControlCode controlCode;
+
+    TruncationReason(int identifier, String description, Optional<String> dialogueRepresentation) {
+        this.controlCode = ControlCode.builder()
+                .identifier(ImmutableList.of(identifier))
+                .description(description)
+                .length(Optional.of(1))
+                .dialogueRepresentation(dialogueRepresentation)
+                .isTerminal(true)
+                .isSuppressNextTerminator(false)
+                .referenceSettings(Optional.empty())
+                .build();
+    }
+
+    public ControlCode getControlCode() {
+        return controlCode;
+    }
+
+    public static Optional<TruncationReason> of(ControlCode controlCode) {
+        for (TruncationReason truncationReason : values()) {
+            if (truncationReason.controlCode.equals(controlCode)) {
+                return Optional.of(truncationReason);
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -4,10 +4,10 @@ import com.google.common.collect.ImmutableList;
 import hawkeye.config.model.ControlCode;
 import hawkeye.config.model.TextTable;
 import hawkeye.parse.exceptions.InvalidSyntaxTreeException;
+import hawkeye.parse.model.CompiledSyntaxTree;
 import hawkeye.parse.model.TextSyntaxTreeNode;
 
-import java.util.Collection;
-import java.util.Optional;
+import java.util.*;
 
 public class CodeSyntaxTreeFactory {
     public TextSyntaxTreeNode createTree(Collection<ControlCode> controlCodes, TextTable textTable)
@@ -36,6 +36,41 @@ public class CodeSyntaxTreeFactory {
         return root;
     }
 
+    public CompiledSyntaxTree compile(TextSyntaxTreeNode root) throws InvalidSyntaxTreeException {
+        // Number the nodes breadth-first so that the root is state 0
+        List<TextSyntaxTreeNode> nodes = new ArrayList<>();
+        Map<TextSyntaxTreeNode, Integer> states = new IdentityHashMap<>();
+        nodes.add(root);
+        states.put(root, CompiledSyntaxTree.ROOT_STATE);
+        for (int i = 0; i < nodes.size(); ++i) {
+            for (TextSyntaxTreeNode child : nodes.get(i).getChildren().values()) {
+                states.put(child, nodes.size());
+                nodes.add(child);
+            }
+        }
+
+        int[] transitions = new int[nodes.size() * CompiledSyntaxTree.ALPHABET_SIZE];
+        Arrays.fill(transitions, CompiledSyntaxTree.NO_STATE);
+        ControlCode[] controlCodes = new ControlCode[nodes.size()];
+        boolean[] hasChildren = new boolean[nodes.size()];
+
+        for (int state = 0; state < nodes.size(); ++state) {
+            TextSyntaxTreeNode node = nodes.get(state);
+            controlCodes[state] = node.getControlCode().orElse(null);
+            hasChildren[state] = node.hasChildren();
+
+            for (Map.Entry<Integer, TextSyntaxTreeNode> child : node.getChildren().entrySet()) {
+                int key = child.getKey();
+                if ((key < 0) || (key >= CompiledSyntaxTree.ALPHABET_SIZE)) {
+                    throw new InvalidSyntaxTreeException("Control code identifier byte out of range: " + key);
+                }
+                transitions[state * CompiledSyntaxTree.ALPHABET_SIZE + key] = states.get(child.getValue());
+            }
+        }
+
+        return new CompiledSyntaxTree(transitions, controlCodes, hasChildren);
+    }
+
     private void addControlCodeToSyntaxTree(TextSyntaxTreeNode node, ControlCode controlCode) throws InvalidSyntaxTreeException {
         int i;
         int key;
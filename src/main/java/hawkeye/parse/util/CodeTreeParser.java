@@ -5,37 +5,50 @@ import hawkeye.config.model.ControlCode;
 import hawkeye.game.model.Game;
 import hawkeye.graph.model.GraphNode;
 import hawkeye.parse.exceptions.InvalidTextException;
+import hawkeye.parse.model.BasicBlock;
+import hawkeye.parse.model.BasicBlockCache;
+import hawkeye.parse.model.CallStack;
+import hawkeye.parse.model.CompiledSyntaxTree;
 import hawkeye.parse.model.ControlCodeUsage;
-import hawkeye.parse.model.TextSyntaxTreeNode;
+import hawkeye.parse.model.DecodedInstruction;
+import hawkeye.parse.model.ParseBudget;
+import hawkeye.parse.model.ParserState;
+import hawkeye.parse.model.SubgraphCache;
+import hawkeye.parse.model.TruncationReason;
 import hawkeye.rom.exceptions.ROMAccessException;
+import hawkeye.rom.util.ROMSlice;
 import lombok.AllArgsConstructor;
 import lombok.Value;
-import org.joda.time.DateTime;
-import org.joda.time.Minutes;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Stack;
 
 @AllArgsConstructor
 public class CodeTreeParser {
-    private static final ControlCode MAXIMUM_RECURSION_CONTROL_CODE = ControlCode.builder()
-            .identifier(ImmutableList.of(-1))
-            .description("Reached maximum recursion depth")
-            .length(Optional.of(1))
-            .dialogueRepresentation(Optional.empty())
-            .isTerminal(true)
-            .isSuppressNextTerminator(false)
-            .referenceSettings(Optional.empty())
-            .build();
-    private static final ControlCodeUsage MAXIMUM_RECURSION_CONTROL_CODE_USAGE =
-            new ControlCodeUsage(MAXIMUM_RECURSION_CONTROL_CODE, new int[] {});
+    private static final Map<TruncationReason, ControlCodeUsage> TRUNCATION_CONTROL_CODE_USAGES =
+            new EnumMap<>(TruncationReason.class);
+    static {
+        for (TruncationReason truncationReason : TruncationReason.values()) {
+            TRUNCATION_CONTROL_CODE_USAGES.put(truncationReason,
+                    new ControlCodeUsage(truncationReason.getControlCode(), ROMSlice.EMPTY));
+        }
+    }
 
+    public static final int UNLIMITED_RECURSION_DEPTH = Integer.MAX_VALUE;
     private static final int DEFAULT_MAXIMUM_RECURSION_DEPTH = 100;
-    private static final int MAXIMUM_MINUTES_RUNTIME = 3;
 
-    private TextSyntaxTreeNode syntaxTree;
+    // The clock and the cancellation token are only consulted once every this many decoded control codes
+    private static final int BUDGET_CHECK_INTERVAL = 256;
+
+    private static final long[] NO_REFERENCES = new long[0];
+
+    private CompiledSyntaxTree syntaxTree;
 
     public GraphNode<ControlCodeUsage> parseToGraph(Game game, long offset)
             throws InvalidTextException, ROMAccessException {
@@ -44,163 +57,462 @@ public class CodeTreeParser {
 
     public GraphNode<ControlCodeUsage> parseToGraph(Game game, long offset, int maximumRecursionDepth)
             throws InvalidTextException, ROMAccessException {
-        return parseToGraph(game, new ParserState(offset, new Stack<>()), new HashMap<>(), DateTime.now(), maximumRecursionDepth);
+        return parseToGraph(game, offset, maximumRecursionDepth, ParseBudget.createDefault());
+    }
+
+    public GraphNode<ControlCodeUsage> parseToGraph(Game game, long offset, ParseBudget parseBudget)
+            throws InvalidTextException, ROMAccessException {
+        return parseToGraph(game, offset, DEFAULT_MAXIMUM_RECURSION_DEPTH, parseBudget);
+    }
+
+    public GraphNode<ControlCodeUsage> parseToGraph(Game game, long offset, int maximumRecursionDepth, ParseBudget parseBudget)
+            throws InvalidTextException, ROMAccessException {
+        return parseToGraph(game, new ParserState(offset, CallStack.EMPTY), new BudgetTracker(parseBudget),
+                maximumRecursionDepth);
     }
 
     @Value
-    private static class ParserState {
+    private static class VisitedNode {
+        private GraphNode<ControlCodeUsage> node;
+        // The index of the frame that created the node, in the order the frames were entered
+        private int frameIndex;
+    }
+
+    /*
+    Tracks how much of a ParseBudget one parser invocation has used up. Once the budget runs out it stays exhausted,
+    so every frame that is still open gets closed off with the same truncation reason.
+    */
+    private static class BudgetTracker {
+        private final ParseBudget parseBudget;
+        private final long startNanos;
+        private long numNodes = 0;
+        private TruncationReason truncationReason = null;
+
+        private BudgetTracker(ParseBudget parseBudget) {
+            this.parseBudget = parseBudget;
+            this.startNanos = System.nanoTime();
+            checkClockAndCancellation();
+        }
+
+        private void countNode() {
+            ++numNodes;
+            if ((truncationReason == null) && (numNodes % BUDGET_CHECK_INTERVAL == 0)) {
+                checkClockAndCancellation();
+            }
+        }
+
+        private TruncationReason getTruncationReason() {
+            if ((truncationReason == null) && (numNodes >= parseBudget.getMaximumNodes())) {
+                truncationReason = TruncationReason.MAXIMUM_NODES;
+            }
+            return truncationReason;
+        }
+
+        private void checkClockAndCancellation() {
+            if (parseBudget.getCancellationToken().isCancelled()) {
+                truncationReason = TruncationReason.CANCELLED;
+            } else if ((parseBudget.getMaximumNanos() != ParseBudget.UNLIMITED)
+                    && (System.nanoTime() - startNanos >= parseBudget.getMaximumNanos())) {
+                truncationReason = TruncationReason.MAXIMUM_TIME;
+            }
+        }
+    }
+
+    /*
+    A ParseFrame holds everything needed to parse one straight-line run of control codes starting at a parser state,
+    i.e. what used to live on the Java stack in a single recursive call. References found along the way push new
+    frames onto an explicit stack instead of recursing, so arbitrarily deep scripts cannot overflow the thread stack.
+    */
+    private static class ParseFrame {
+        private final ParserState startParserState;
+        private final int frameIndex;
+        private final int remainingRecursionDepth;
+        // Where this frame's nodes start in the list of every node parsed so far
+        private final int firstParsedNodeIndex;
+
+        /*
+        A frame's subgraph can only be shared with later parses if nothing in it was cut short and none of its nodes
+        lead back into a frame that was entered before it, since that part of the graph may still be growing.
+        */
+        private boolean isTruncated = false;
+        private int lowestReferencedFrameIndex;
+        private int subgraphDepth = 0;
+
         private long offset;
-        private Stack<Long> callStack;
+        private CallStack callStack;
+        private boolean isSuppressNextTerminator = false;
+        private boolean isEnd = false;
+
+        private GraphNode<ControlCodeUsage> rootNode = null;
+        private GraphNode<ControlCodeUsage> previousNode = null;
+
+        // The control code usage that has been decoded, but whose references have not all been followed yet
+        private GraphNode<ControlCodeUsage> currentNode = null;
+        private ControlCode currentControlCode;
+        private long offsetForNextNode;
+        private long[] referencePointerOffsets = NO_REFERENCES;
+        private int nextReferenceIndex = 0;
+
+        private BasicBlock basicBlock = null;
+        private int basicBlockIndex = 0;
+
+        private ParseFrame(ParserState parserState, int frameIndex, int remainingRecursionDepth,
+                           int firstParsedNodeIndex) {
+            this.startParserState = parserState;
+            this.frameIndex = frameIndex;
+            this.firstParsedNodeIndex = firstParsedNodeIndex;
+            this.lowestReferencedFrameIndex = frameIndex;
+            this.offset = parserState.getOffset();
+            this.callStack = parserState.getCallStack();
+            this.remainingRecursionDepth = remainingRecursionDepth;
+        }
+
+        private boolean hasPendingReferences() {
+            return nextReferenceIndex < referencePointerOffsets.length;
+        }
+
+        private boolean isShareable() {
+            return !isTruncated && (lowestReferencedFrameIndex >= frameIndex);
+        }
     }
 
     private GraphNode<ControlCodeUsage> parseToGraph(
             Game game,
-            ParserState currentParserState,
-            Map<ParserState, GraphNode<ControlCodeUsage>> alreadyVisitedParserStates,
-            DateTime startTime,
+            ParserState initialParserState,
+            BudgetTracker budgetTracker,
             int maximumRecursionDepth
     ) throws InvalidTextException, ROMAccessException {
+        Map<ParserState, VisitedNode> alreadyVisitedParserStates = new HashMap<>();
+        List<SubgraphCache.ParsedNode> parsedNodes = new ArrayList<>();
+        SubgraphCache subgraphCache = game.getSubgraphCache();
+        Deque<ParseFrame> frames = new ArrayDeque<>();
+        int[] numFramesEntered = {0};
 
-        if ((maximumRecursionDepth <= -1)
-                || Minutes.minutesBetween(startTime, DateTime.now()).getMinutes() > MAXIMUM_MINUTES_RUNTIME) {
-            return new GraphNode<>(MAXIMUM_RECURSION_CONTROL_CODE_USAGE);
-        }
-        --maximumRecursionDepth;
-
-        GraphNode<ControlCodeUsage> rootNode = alreadyVisitedParserStates.get(currentParserState);
-        if (rootNode != null) {
-            return rootNode;
-        }
+        GraphNode<ControlCodeUsage> result = enterFrame(initialParserState, null, maximumRecursionDepth,
+                alreadyVisitedParserStates, parsedNodes, subgraphCache, budgetTracker, frames, numFramesEntered);
 
-        GraphNode<ControlCodeUsage> previousNode = null, nextNode;
+        while (!frames.isEmpty()) {
+            ParseFrame frame = frames.peek();
 
-        long offset = currentParserState.getOffset();
-        Stack<Long> callStack = currentParserState.getCallStack();
+            if (frame.hasPendingReferences()) {
+                long pointerOffset = frame.referencePointerOffsets[frame.nextReferenceIndex];
+                ++frame.nextReferenceIndex;
 
-        boolean isEnd = false;
-        boolean isSuppressNextTerminator = false;
-        while (!isEnd) {
-            // Step 1: Get the control code that's being used at this offset
-            ControlCode controlCode = parseControlCodeFromRom(game, offset);
-            int operatorLength = controlCode.getIdentifier().size();
-            Optional<ControlCode.ReferenceSettings> referenceSettings = controlCode.getReferenceSettings();
-            isSuppressNextTerminator |= controlCode.isSuppressNextTerminator();
+                ControlCode.ReferenceSettings referenceSettings = frame.currentControlCode.getReferenceSettings().get();
+                Optional<ParserState> referencedParserState =
+                        getReferencedParserState(game, pointerOffset, frame, referenceSettings);
+                if (!referencedParserState.isPresent()) {
+                    continue;
+                }
 
-            // Step 2: Read the parameters for this control code instance
-            int parametersLength;
-            if (referenceSettings.isPresent() && referenceSettings.get().getCountOffset().isPresent()) {
-                int countOffset = referenceSettings.get().getCountOffset().get();
-                int numberOfNonVariableLengthParameters = countOffset + 1 - operatorLength;
-                int numberOfPointers = game.read(offset + countOffset);
-                parametersLength = numberOfNonVariableLengthParameters +
-                        numberOfPointers * referenceSettings.get().getReferenceLength();
-            } else {
-                parametersLength = controlCode.getLength().get() - operatorLength;
-            }
-            int[] parametersList = game.readArray(offset + operatorLength, parametersLength);
-
-            // Step 3: Create the next node in the graph that represents this control code usage
-            nextNode = new GraphNode<>(new ControlCodeUsage(controlCode, parametersList));
-            alreadyVisitedParserStates.put(new ParserState(offset, callStack), nextNode);
-
-            // Step 4: Add to the graph all the references that shoot out of this control code usage
-            long offsetForNextNode = offset + operatorLength + parametersLength;
-            if (referenceSettings.isPresent()) {
-                if (referenceSettings.get().getCountOffset().isPresent()) {
-                    int countOffset = referenceSettings.get().getCountOffset().get();
-                    int numberOfPointers = game.read(offset + countOffset);
-                    for (int i = 0; i < numberOfPointers * referenceSettings.get().getReferenceLength();
-                         i += referenceSettings.get().getReferenceLength()) {
-                        addReferenceSubnode(
-                                game,
-                                startTime,
-                                maximumRecursionDepth,
-                                offset + referenceSettings.get().getReferencesOffset() + i,
-                                offsetForNextNode,
-                                nextNode,
-                                alreadyVisitedParserStates,
-                                callStack,
-                                referenceSettings.get());
-                    }
-                } else {
-                    addReferenceSubnode(
-                            game,
-                            startTime,
-                            maximumRecursionDepth,
-                            offset + referenceSettings.get().getReferencesOffset(),
-                            offsetForNextNode,
-                            nextNode,
-                            alreadyVisitedParserStates,
-                            callStack,
-                            referenceSettings.get());
+                GraphNode<ControlCodeUsage> subnode = enterFrame(
+                        referencedParserState.get(),
+                        frame,
+                        frame.remainingRecursionDepth,
+                        alreadyVisitedParserStates,
+                        parsedNodes,
+                        subgraphCache,
+                        budgetTracker,
+                        frames,
+                        numFramesEntered);
+                if (subnode != null) {
+                    frame.currentNode.addVertex(subnode);
                 }
+                continue;
             }
 
-            /*
-            If this control code is terminal, try to end the parsing here.
-
-            Also, if it's an unconditional reference, try to end the parsing here.
-            This works because there are only two cases for an unconditional reference:
-              1) an unconditional call
-              2) an unconditional goto
-            For case (1), we already added a subnode that has the next offset in its call stack
-            For case (2), obviously the parsing should stop here.
-            */
-            if (controlCode.isTerminal()) {
-                if (isSuppressNextTerminator) {
-                    isSuppressNextTerminator = false;
-                    offset = offsetForNextNode;
-                } else {
-                    if (callStack.empty()) {
-                        isEnd = true;
-                    } else {
-                        offset = callStack.pop();
-                    }
+            if (frame.currentNode != null) {
+                finishControlCodeUsage(frame);
+            }
+
+            if (frame.isEnd) {
+                frames.pop();
+                if (frame.isShareable()) {
+                    subgraphCache.put(frame.startParserState, frame.rootNode, frame.subgraphDepth, ImmutableList.copyOf(
+                            parsedNodes.subList(frame.firstParsedNodeIndex, parsedNodes.size())));
                 }
-            } else if (referenceSettings.isPresent() && !referenceSettings.get().isConditional()) {
-                if (callStack.empty()) {
-                    isEnd = true;
+
+                if (frames.isEmpty()) {
+                    result = frame.rootNode;
                 } else {
-                    offset = callStack.pop();
+                    ParseFrame parentFrame = frames.peek();
+                    parentFrame.currentNode.addVertex(frame.rootNode);
+                    parentFrame.isTruncated |= frame.isTruncated;
+                    parentFrame.lowestReferencedFrameIndex =
+                            Math.min(parentFrame.lowestReferencedFrameIndex, frame.lowestReferencedFrameIndex);
+                    parentFrame.subgraphDepth = Math.max(parentFrame.subgraphDepth, frame.subgraphDepth + 1);
                 }
+            } else if (budgetTracker.getTruncationReason() != null) {
+                truncateFrame(frame, budgetTracker.getTruncationReason());
             } else {
-                offset = offsetForNextNode;
+                decodeControlCodeUsage(game, frame, alreadyVisitedParserStates, parsedNodes);
+                budgetTracker.countNode();
             }
+        }
+
+        return result;
+    }
 
-            if (previousNode == null) {
-                rootNode = nextNode;
-                previousNode = rootNode;
+    /*
+    Either resolves the given parser state right away (because a limit was reached or the state was already parsed,
+    either earlier in this parse or by an earlier parse of the same game) and returns its node, or pushes a new frame
+    that will produce the node and returns null.
+    */
+    private GraphNode<ControlCodeUsage> enterFrame(
+            ParserState parserState,
+            ParseFrame parentFrame,
+            int maximumRecursionDepth,
+            Map<ParserState, VisitedNode> alreadyVisitedParserStates,
+            List<SubgraphCache.ParsedNode> parsedNodes,
+            SubgraphCache subgraphCache,
+            BudgetTracker budgetTracker,
+            Deque<ParseFrame> frames,
+            int[] numFramesEntered) {
+        if (budgetTracker.getTruncationReason() != null) {
+            markTruncated(parentFrame);
+            return new GraphNode<>(TRUNCATION_CONTROL_CODE_USAGES.get(budgetTracker.getTruncationReason()));
+        } else if (maximumRecursionDepth <= -1) {
+            markTruncated(parentFrame);
+            return new GraphNode<>(TRUNCATION_CONTROL_CODE_USAGES.get(TruncationReason.MAXIMUM_RECURSION_DEPTH));
+        }
+
+        VisitedNode alreadyVisitedNode = alreadyVisitedParserStates.get(parserState);
+        if (alreadyVisitedNode != null) {
+            if (parentFrame != null) {
+                parentFrame.lowestReferencedFrameIndex =
+                        Math.min(parentFrame.lowestReferencedFrameIndex, alreadyVisitedNode.getFrameIndex());
+            }
+            return alreadyVisitedNode.getNode();
+        }
+
+        Optional<SubgraphCache.Entry> cachedSubgraph = subgraphCache.get(parserState);
+        if (cachedSubgraph.isPresent()
+                && isCachedSubgraphUsable(cachedSubgraph.get(), maximumRecursionDepth, alreadyVisitedParserStates,
+                        budgetTracker)) {
+            SubgraphCache.Entry entry = cachedSubgraph.get();
+            // Later references to any state inside the subgraph have to link to its nodes, as if it had been parsed here
+            int frameIndex = (parentFrame == null) ? 0 : parentFrame.frameIndex;
+            for (SubgraphCache.ParsedNode parsedNode : entry.getParsedNodes()) {
+                alreadyVisitedParserStates.put(parsedNode.getParserState(),
+                        new VisitedNode(parsedNode.getNode(), frameIndex));
+            }
+            parsedNodes.addAll(entry.getParsedNodes());
+            budgetTracker.numNodes += entry.getParsedNodes().size();
+
+            if (parentFrame != null) {
+                parentFrame.subgraphDepth = Math.max(parentFrame.subgraphDepth, entry.getDepth() + 1);
+            }
+            return entry.getSubgraph();
+        }
+
+        int remainingRecursionDepth = (maximumRecursionDepth == UNLIMITED_RECURSION_DEPTH)
+                ? UNLIMITED_RECURSION_DEPTH
+                : maximumRecursionDepth - 1;
+        frames.push(new ParseFrame(parserState, numFramesEntered[0]++, remainingRecursionDepth, parsedNodes.size()));
+        return null;
+    }
+
+    /*
+    A cached subgraph can only stand in for parsing it here if parsing it here would give the same graph. That is not
+    the case if it needed to go deeper than allowed here, if the node budget would run out partway through it, or if
+    this parse already visited one of its states, since the subgraph would then have to link to that earlier node.
+    */
+    private boolean isCachedSubgraphUsable(
+            SubgraphCache.Entry entry,
+            int maximumRecursionDepth,
+            Map<ParserState, VisitedNode> alreadyVisitedParserStates,
+            BudgetTracker budgetTracker) {
+        if (entry.getDepth() > maximumRecursionDepth) {
+            return false;
+        } else if (entry.getParsedNodes().size() >= budgetTracker.parseBudget.getMaximumNodes() - budgetTracker.numNodes) {
+            return false;
+        }
+
+        for (SubgraphCache.ParsedNode parsedNode : entry.getParsedNodes()) {
+            if (alreadyVisitedParserStates.containsKey(parsedNode.getParserState())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void markTruncated(ParseFrame frame) {
+        if (frame != null) {
+            frame.isTruncated = true;
+        }
+    }
+
+    private void decodeControlCodeUsage(
+            Game game,
+            ParseFrame frame,
+            Map<ParserState, VisitedNode> alreadyVisitedParserStates,
+            List<SubgraphCache.ParsedNode> parsedNodes)
+            throws InvalidTextException, ROMAccessException {
+        // Step 1: Get the control code usage at this offset, continuing in the current basic block if possible
+        if ((frame.basicBlock != null)
+                && (frame.basicBlockIndex + 1 < frame.basicBlock.size())
+                && (frame.basicBlock.get(frame.basicBlockIndex + 1).getOffset() == frame.offset)) {
+            ++frame.basicBlockIndex;
+        } else {
+            frame.basicBlock = getBasicBlock(game, frame.offset);
+            frame.basicBlockIndex = 0;
+        }
+        DecodedInstruction instruction = frame.basicBlock.get(frame.basicBlockIndex);
+        // Blocks are decoded ahead without marking anything, so the ROM is only marked as read up to where parses get
+        game.markRead(instruction.getOffset(), (int) (instruction.getNextOffset() - instruction.getOffset()));
+        ControlCode controlCode = instruction.getControlCodeUsage().getControlCode();
+        frame.isSuppressNextTerminator |= controlCode.isSuppressNextTerminator();
+
+        // Step 2: Create the next node in the graph that represents this control code usage
+        GraphNode<ControlCodeUsage> nextNode = new GraphNode<>(instruction.getControlCodeUsage());
+        ParserState parserState = new ParserState(frame.offset, frame.callStack);
+        alreadyVisitedParserStates.put(parserState, new VisitedNode(nextNode, frame.frameIndex));
+        parsedNodes.add(new SubgraphCache.ParsedNode(parserState, nextNode));
+
+        // Step 3: Queue up all the references that shoot out of this control code usage
+        frame.currentNode = nextNode;
+        frame.currentControlCode = controlCode;
+        frame.offsetForNextNode = instruction.getNextOffset();
+        frame.referencePointerOffsets = instruction.getReferencePointerOffsets();
+        frame.nextReferenceIndex = 0;
+    }
+
+    private BasicBlock getBasicBlock(Game game, long offset) throws InvalidTextException, ROMAccessException {
+        BasicBlockCache basicBlockCache = game.getBasicBlockCache();
+        Optional<BasicBlock> cachedBasicBlock = basicBlockCache.get(offset);
+        if (cachedBasicBlock.isPresent()) {
+            return cachedBasicBlock.get();
+        }
+
+        ImmutableList.Builder<DecodedInstruction> instructions = ImmutableList.builder();
+        DecodedInstruction instruction = decodeInstruction(game, offset);
+        instructions.add(instruction);
+        while (!instruction.getControlCodeUsage().getControlCode().isTerminal()
+                && (instruction.getReferencePointerOffsets().length == 0)) {
+            try {
+                instruction = decodeInstruction(game, instruction.getNextOffset());
+            } catch (InvalidTextException | ROMAccessException e) {
+                // End the block early; the error is raised once a parse actually gets to this offset
+                break;
+            }
+            instructions.add(instruction);
+        }
+
+        return basicBlockCache.put(new BasicBlock(instructions.build()));
+    }
+
+    private DecodedInstruction decodeInstruction(Game game, long offset) throws InvalidTextException, ROMAccessException {
+        ControlCode controlCode = parseControlCodeFromRom(game, offset);
+        int operatorLength = controlCode.getIdentifier().size();
+        Optional<ControlCode.ReferenceSettings> referenceSettings = controlCode.getReferenceSettings();
+
+        // Read the parameters for this control code instance
+        int parametersLength;
+        int numberOfPointers = 1;
+        if (referenceSettings.isPresent() && referenceSettings.get().getCountOffset().isPresent()) {
+            int countOffset = referenceSettings.get().getCountOffset().get();
+            int numberOfNonVariableLengthParameters = countOffset + 1 - operatorLength;
+            numberOfPointers = game.peek(offset + countOffset);
+            parametersLength = numberOfNonVariableLengthParameters +
+                    numberOfPointers * referenceSettings.get().getReferenceLength();
+        } else {
+            parametersLength = controlCode.getLength().get() - operatorLength;
+        }
+        ROMSlice parameters = game.peekSlice(offset + operatorLength, parametersLength);
+
+        // Find all the references that shoot out of this control code usage
+        long[] referencePointerOffsets = NO_REFERENCES;
+        if (referenceSettings.isPresent()) {
+            int referenceLength = referenceSettings.get().getReferenceLength();
+            referencePointerOffsets = new long[numberOfPointers];
+            for (int i = 0; i < numberOfPointers; ++i) {
+                referencePointerOffsets[i] = offset + referenceSettings.get().getReferencesOffset() + i * referenceLength;
+            }
+        }
+
+        return new DecodedInstruction(offset, new ControlCodeUsage(controlCode, parameters),
+                offset + operatorLength + parametersLength, referencePointerOffsets);
+    }
+
+    private void finishControlCodeUsage(ParseFrame frame) {
+        ControlCode controlCode = frame.currentControlCode;
+        Optional<ControlCode.ReferenceSettings> referenceSettings = controlCode.getReferenceSettings();
+
+        /*
+        If this control code is terminal, try to end the parsing here.
+
+        Also, if it's an unconditional reference, try to end the parsing here.
+        This works because there are only two cases for an unconditional reference:
+          1) an unconditional call
+          2) an unconditional goto
+        For case (1), we already added a subnode that has the next offset in its call stack
+        For case (2), obviously the parsing should stop here.
+        */
+        if (controlCode.isTerminal()) {
+            if (frame.isSuppressNextTerminator) {
+                frame.isSuppressNextTerminator = false;
+                frame.offset = frame.offsetForNextNode;
             } else {
-                previousNode.addVertex(nextNode);
-                previousNode = nextNode;
+                returnFromCall(frame);
             }
+        } else if (referenceSettings.isPresent() && !referenceSettings.get().isConditional()) {
+            returnFromCall(frame);
+        } else {
+            frame.offset = frame.offsetForNextNode;
         }
 
-        return rootNode;
+        if (frame.previousNode == null) {
+            frame.rootNode = frame.currentNode;
+        } else {
+            frame.previousNode.addVertex(frame.currentNode);
+        }
+        frame.previousNode = frame.currentNode;
+        frame.currentNode = null;
+    }
+
+    private void truncateFrame(ParseFrame frame, TruncationReason truncationReason) {
+        GraphNode<ControlCodeUsage> truncationNode = new GraphNode<>(TRUNCATION_CONTROL_CODE_USAGES.get(truncationReason));
+        if (frame.previousNode == null) {
+            frame.rootNode = truncationNode;
+        } else {
+            frame.previousNode.addVertex(truncationNode);
+        }
+        frame.previousNode = truncationNode;
+        frame.isTruncated = true;
+        frame.isEnd = true;
+    }
+
+    private void returnFromCall(ParseFrame frame) {
+        if (frame.callStack.isEmpty()) {
+            frame.isEnd = true;
+        } else {
+            frame.offset = frame.callStack.peek();
+            frame.callStack = frame.callStack.pop();
+        }
     }
 
     private ControlCode parseControlCodeFromRom(Game game, long offset)
             throws ROMAccessException, InvalidTextException {
-        TextSyntaxTreeNode syntaxNode = syntaxTree;
-        Optional<ControlCode> lastKnownResult = Optional.empty();
+        int state = CompiledSyntaxTree.ROOT_STATE;
+        ControlCode lastKnownResult = null;
 
         while (true) {
-            if (!syntaxNode.hasChildren() && syntaxNode.getControlCode().isPresent()) {
-                return syntaxNode.getControlCode().get();
+            if (!syntaxTree.hasChildren(state) && (syntaxTree.getControlCode(state) != null)) {
+                return syntaxTree.getControlCode(state);
             }
 
-            int value = game.read(offset);
-            Optional<TextSyntaxTreeNode> nextSyntaxNode = syntaxNode.getChild(value);
+            int value = game.peek(offset);
+            int nextState = syntaxTree.getTransition(state, value);
 
-            if (nextSyntaxNode.isPresent() && nextSyntaxNode.get().getControlCode().isPresent()) {
-                lastKnownResult = nextSyntaxNode.get().getControlCode();
+            if ((nextState != CompiledSyntaxTree.NO_STATE) && (syntaxTree.getControlCode(nextState) != null)) {
+                lastKnownResult = syntaxTree.getControlCode(nextState);
             }
 
-            if (nextSyntaxNode.isPresent() && (offset + 1 < game.getRom().size())) {
+            if ((nextState != CompiledSyntaxTree.NO_STATE) && (offset + 1 < game.getRom().size())) {
                 ++offset;
-                syntaxNode = nextSyntaxNode.get();
-            } else if (lastKnownResult.isPresent()) {
-                return lastKnownResult.get();
+                state = nextState;
+            } else if (lastKnownResult != null) {
+                return lastKnownResult;
             } else {
                 throw new InvalidTextException(
                         String.format("Could not parse invalid control code byte [%02X] at offset %X", value, offset));
@@ -208,16 +520,11 @@ public class CodeTreeParser {
         }
     }
 
-    private void addReferenceSubnode(Game game,
-                                     DateTime startTime,
-                                     int recursionDepth,
-                                     long pointerOffset,
-                                     long offsetForNextNode,
-                                     GraphNode<ControlCodeUsage> node,
-                                     Map<ParserState, GraphNode<ControlCodeUsage>> alreadyVisitedNodes,
-                                     Stack<Long> callStack,
-                                     ControlCode.ReferenceSettings referenceSettings)
-            throws InvalidTextException, ROMAccessException {
+    private Optional<ParserState> getReferencedParserState(Game game,
+                                                           long pointerOffset,
+                                                           ParseFrame frame,
+                                                           ControlCode.ReferenceSettings referenceSettings)
+            throws ROMAccessException {
         Optional<Long> pointer;
         if (referenceSettings.isAbsoluteAddressing()) {
             pointer = game.readPointer(pointerOffset);
@@ -226,20 +533,14 @@ public class CodeTreeParser {
         }
 
         if (!pointer.isPresent()) {
-            return;
+            return Optional.empty();
         }
 
-        Stack<Long> copyOfCallStack = (Stack<Long>) callStack.clone();
-        // Note that the call stack is copied even if this is a GOTO reference. This is how EarthBound works.
+        // Note that the call stack is kept even if this is a GOTO reference. This is how EarthBound works.
+        CallStack callStack = frame.callStack;
         if (!referenceSettings.isGoto()) {
-            copyOfCallStack.add(offsetForNextNode);
-        }
-        GraphNode<ControlCodeUsage> subnode = parseToGraph(
-                game,
-                new ParserState(pointer.get(), copyOfCallStack),
-                alreadyVisitedNodes,
-                startTime,
-                recursionDepth);
-        node.addVertex(subnode);
+            callStack = callStack.push(frame.offsetForNextNode);
+        }
+        return Optional.of(new ParserState(pointer.get(), callStack));
     }
 }
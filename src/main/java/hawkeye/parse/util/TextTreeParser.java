@@ -1,44 +1,50 @@
 package hawkeye.parse.util;
 
 import hawkeye.config.model.ControlCode;
+import hawkeye.graph.model.CompactGraph;
 import hawkeye.graph.model.GraphNode;
 import hawkeye.parse.model.ControlCodeUsage;
 import lombok.Value;
 import org.apache.commons.lang3.StringUtils;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.Stack;
 
 public class TextTreeParser {
     @Value
     private class RecursionStackEntry {
-        private GraphNode<String> first;
-        private GraphNode<ControlCodeUsage> second;
+        private int first;
+        private int second;
     }
 
     public GraphNode<String> create(GraphNode<ControlCodeUsage> textGraph) {
-        GraphNode<String> root = new GraphNode<>(null);
+        return create(CompactGraph.of(textGraph)).toGraph();
+    }
+
+    public CompactGraph<String> create(CompactGraph<ControlCodeUsage> textGraph) {
+        CompactGraph.Builder<String> builder = CompactGraph.builder();
+        int root = builder.addNode(null);
 
-        Map<GraphNode<ControlCodeUsage>, GraphNode<String>> alreadyVisitedNodes = new HashMap<>();
+        int[] alreadyVisitedNodes = new int[textGraph.size()];
+        Arrays.fill(alreadyVisitedNodes, -1);
 
         Stack<RecursionStackEntry> recursionStack = new Stack<>();
-        recursionStack.add(new RecursionStackEntry(root, textGraph));
+        recursionStack.add(new RecursionStackEntry(root, CompactGraph.ROOT));
 
         while (!recursionStack.isEmpty()) {
             RecursionStackEntry recursionStackEntry = recursionStack.pop();
-            GraphNode<String> previousNode = recursionStackEntry.getFirst();
-            GraphNode<ControlCodeUsage> ccNode = recursionStackEntry.getSecond();
+            int previousNode = recursionStackEntry.getFirst();
+            int ccNode = recursionStackEntry.getSecond();
 
-            GraphNode<String> nextNode = alreadyVisitedNodes.get(ccNode);
-            if (nextNode != null) {
-                previousNode.addVertex(nextNode);
+            int nextNode = alreadyVisitedNodes[ccNode];
+            if (nextNode != -1) {
+                builder.addVertex(previousNode, nextNode);
             } else {
-                ControlCode controlCode = ccNode.getValue().getControlCode();
+                ControlCode controlCode = textGraph.getValue(ccNode).getControlCode();
                 StringBuilder dialogueBuilder = new StringBuilder();
 
                 while (true) {
-                    if (controlCode.getReferenceSettings().isPresent() || (ccNode.getVertices().size() > 1)) {
+                    if (controlCode.getReferenceSettings().isPresent() || (textGraph.getNumVertices(ccNode) > 1)) {
                         break;
                     }
 
@@ -46,34 +52,34 @@ public class TextTreeParser {
                         dialogueBuilder.append(controlCode.getDialogueRepresentation().get());
                     }
 
-                    if (ccNode.getVertices().isEmpty()) {
+                    if (textGraph.getNumVertices(ccNode) == 0) {
                         break;
                     }
 
-                    ccNode = ccNode.getVertices().get(0);
-                    controlCode = ccNode.getValue().getControlCode();
+                    ccNode = textGraph.getVertex(ccNode, 0);
+                    controlCode = textGraph.getValue(ccNode).getControlCode();
                 }
 
                 String dialogue = dialogueBuilder.toString().trim().replaceAll("\n\\s*\n", "\n");
                 if (!StringUtils.isBlank(dialogue)) {
-                    nextNode = new GraphNode<>(dialogue);
-                    previousNode.addVertex(nextNode);
+                    nextNode = builder.addNode(dialogue);
+                    builder.addVertex(previousNode, nextNode);
 
-                    for (GraphNode<ControlCodeUsage> nextCcNode : ccNode.getVertices()) {
-                        recursionStack.push(new RecursionStackEntry(nextNode, nextCcNode));
+                    for (int i = 0; i < textGraph.getNumVertices(ccNode); ++i) {
+                        recursionStack.push(new RecursionStackEntry(nextNode, textGraph.getVertex(ccNode, i)));
                     }
 
-                    alreadyVisitedNodes.put(recursionStackEntry.getSecond(), nextNode);
+                    alreadyVisitedNodes[recursionStackEntry.getSecond()] = nextNode;
                 } else {
-                    for (GraphNode<ControlCodeUsage> nextCcNode : ccNode.getVertices()) {
-                        recursionStack.push(new RecursionStackEntry(previousNode, nextCcNode));
+                    for (int i = 0; i < textGraph.getNumVertices(ccNode); ++i) {
+                        recursionStack.push(new RecursionStackEntry(previousNode, textGraph.getVertex(ccNode, i)));
                     }
 
-                    alreadyVisitedNodes.put(recursionStackEntry.getSecond(), previousNode);
+                    alreadyVisitedNodes[recursionStackEntry.getSecond()] = previousNode;
                 }
             }
         }
 
-        return root;
+        return builder.build();
     }
 }
@@ -7,21 +7,26 @@ import java.util.Arrays;
 public class ArrayROM implements ROM {
     private final int[] data;
     private final String md5sum;
-    private final boolean[] hasBeenRead;
+    private final ROMCoverage coverage;
 
     public ArrayROM(int[] data) {
         this.data = data;
-        this.hasBeenRead = new boolean[data.length];
+        this.coverage = new ROMCoverage(data.length);
         this.md5sum = "md5sum todo";
     }
 
     @Override
     public int read(long offset) throws ROMAccessException {
-        int result =  data[(int) offset];
-        hasBeenRead[(int) offset] = true;
+        int result = peek(offset);
+        coverage.mark(offset);
         return result;
     }
 
+    @Override
+    public int peek(long offset) throws ROMAccessException {
+        return data[(int) offset];
+    }
+
     @Override
     public long readMultiLittleEndian(long offset, int length) throws ROMAccessException {
         long result = 0;
@@ -29,9 +34,7 @@ public class ArrayROM implements ROM {
             result |= ((long) data[(int) (i+offset)]) << (8 * i);
         }
 
-        for (int i = 0; i < length; ++i) {
-            hasBeenRead[(int) (i+offset)] = true;
-        }
+        coverage.markRange(offset, length);
 
         return result;
     }
@@ -40,13 +43,30 @@ public class ArrayROM implements ROM {
     public int[] readArray(long offset, int length) throws ROMAccessException {
         int[] result =  Arrays.copyOfRange(data, (int) offset, (int) (offset+length));
 
-        for (int i = 0; i < length; ++i) {
-            hasBeenRead[(int) (i+offset)] = true;
-        }
+        coverage.markRange(offset, length);
 
         return result;
     }
 
+    @Override
+    public ROMSlice readSlice(long offset, int length) throws ROMAccessException {
+        ROMSlice result = peekSlice(offset, length);
+
+        coverage.markRange(offset, length);
+
+        return result;
+    }
+
+    @Override
+    public ROMSlice peekSlice(long offset, int length) throws ROMAccessException {
+        if ((offset < 0) || (offset + length > data.length)) {
+            throw new ROMAccessException(
+                    String.format("Cannot read out-of-range offset 0x%X in ROM of size 0x%X", offset + length - 1, data.length));
+        }
+
+        return ROMSlice.of(data, (int) offset, length);
+    }
+
     @Override
     public String getMd5sum() {
         return md5sum;
@@ -59,6 +79,11 @@ public class ArrayROM implements ROM {
 
     @Override
     public boolean hasBeenRead(long offset) {
-        return hasBeenRead[(int) offset];
+        return coverage.isRead(offset);
+    }
+
+    @Override
+    public ROMCoverage getCoverage() {
+        return coverage;
     }
 }
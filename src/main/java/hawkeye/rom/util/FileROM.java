@@ -1,58 +1,110 @@
 package hawkeye.rom.util;
 
 import hawkeye.rom.exceptions.ROMAccessException;
-import lombok.Getter;
-import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.codec.binary.Hex;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 public class FileROM implements ROM {
-    private RandomAccessFile randomAccessFile;
+    private static final int MD5_BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel fileChannel;
     private final long size;
-    private boolean[] hasBeenRead;
+    private final ROMCoverage coverage;
 
-    @Getter
-    private final String md5sum;
+    private volatile String md5sum = null;
 
     public FileROM(String filename) throws IOException {
-        File file = new File(filename);
-        size = file.length();
-        md5sum = calculateMd5sum(file);
-        randomAccessFile = new RandomAccessFile(file, "r");
-        hasBeenRead = new boolean[(int) size];
+        this(new File(filename));
     }
 
     public FileROM(File file) throws IOException {
         size = file.length();
-        md5sum = calculateMd5sum(file);
-        randomAccessFile = new RandomAccessFile(file, "r");
-        hasBeenRead = new boolean[(int) size];
+        fileChannel = new RandomAccessFile(file, "r").getChannel();
+        coverage = new ROMCoverage(size);
     }
 
-    private static String calculateMd5sum(File file) throws IOException {
-        FileInputStream fis = new FileInputStream(file);
-        return DigestUtils.md5Hex(fis);
+    // Hashing the whole ROM is only needed to identify it, so it's deferred until someone asks
+    @Override
+    public String getMd5sum() {
+        String result = md5sum;
+        if (result == null) {
+            synchronized (this) {
+                result = md5sum;
+                if (result == null) {
+                    md5sum = result = calculateMd5sum();
+                }
+            }
+        }
+        return result;
     }
 
-    @Override
-    public int read(long offset) throws ROMAccessException {
-        if ((offset < 0) || (offset >= size)) {
-            throw new ROMAccessException(
-                    String.format("Cannot read out-of-range offset 0x%X in ROM of size 0x%X", offset, size));
+    private String calculateMd5sum() {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not supported on this platform", e);
         }
 
+        ByteBuffer byteBuffer = ByteBuffer.allocate(MD5_BUFFER_SIZE);
         try {
-            randomAccessFile.seek(offset);
-            hasBeenRead[(int) offset] = true;
-            return randomAccessFile.read();
+            long position = 0;
+            while (position < size) {
+                byteBuffer.clear();
+                int bytesRead = fileChannel.read(byteBuffer, position);
+                if (bytesRead < 0) {
+                    throw new IOException("Unexpected end of file");
+                }
+                byteBuffer.flip();
+                messageDigest.update(byteBuffer);
+                position += bytesRead;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read ROM to calculate its md5sum", e);
+        }
+        return Hex.encodeHexString(messageDigest.digest());
+    }
+
+    private ByteBuffer readBytes(long offset, int length) throws ROMAccessException {
+        ByteBuffer byteBuffer = ByteBuffer.allocate(length);
+        try {
+            while (byteBuffer.hasRemaining()) {
+                int bytesRead = fileChannel.read(byteBuffer, offset + byteBuffer.position());
+                if (bytesRead < 0) {
+                    throw new IOException("Unexpected end of file");
+                }
+            }
         } catch (IOException e) {
-            hasBeenRead[(int) offset] = false;
             throw new ROMAccessException(
                     String.format("Error while reading offset 0x%X in ROM of size 0x%X", offset, size), e);
         }
+        byteBuffer.flip();
+        return byteBuffer;
+    }
+
+    @Override
+    public int read(long offset) throws ROMAccessException {
+        int result = peek(offset);
+        coverage.mark(offset);
+        return result;
+    }
+
+    @Override
+    public int peek(long offset) throws ROMAccessException {
+        if ((offset < 0) || (offset >= size)) {
+            throw new ROMAccessException(
+                    String.format("Cannot read out-of-range offset 0x%X in ROM of size 0x%X", offset, size));
+        }
+
+        return readBytes(offset, 1).get() & 0xff;
     }
 
     @Override
@@ -62,47 +114,47 @@ public class FileROM implements ROM {
                     String.format("Cannot read out-of-range offset 0x%X in ROM of size 0x%X", offset + length - 1, size));
         }
 
+        ByteBuffer byteBuffer = readBytes(offset, length);
         long result = 0;
-        try {
-            randomAccessFile.seek(offset);
-            for (int i = 0; i < length; ++i) {
-                long z = ((long) randomAccessFile.read()) << (8 * i);
-                result |= z;
-            }
-        } catch (IOException e) {
-            throw new ROMAccessException(
-                    String.format("Error while reading offset 0x%X in ROM of size 0x%X", offset, size), e);
-        }
-
         for (int i = 0; i < length; ++i) {
-            hasBeenRead[(int) (i+offset)] = true;
+            result |= ((long) (byteBuffer.get(i) & 0xff)) << (8 * i);
         }
 
+        coverage.markRange(offset, length);
+
         return result;
     }
 
     @Override
     public int[] readArray(long offset, int length) throws ROMAccessException {
+        int[] result = peekArray(offset, length);
+
+        coverage.markRange(offset, length);
+
+        return result;
+    }
+
+    @Override
+    public ROMSlice readSlice(long offset, int length) throws ROMAccessException {
+        return ROMSlice.of(readArray(offset, length));
+    }
+
+    @Override
+    public ROMSlice peekSlice(long offset, int length) throws ROMAccessException {
+        return ROMSlice.of(peekArray(offset, length));
+    }
+
+    private int[] peekArray(long offset, int length) throws ROMAccessException {
         if ((offset < 0) || (offset + length - 1 >= size)) {
             throw new ROMAccessException(
                     String.format("Cannot read out-of-range offset 0x%X in ROM of size 0x%X", offset + length - 1, size));
         }
 
+        ByteBuffer byteBuffer = readBytes(offset, length);
         int[] result = new int[length];
-        try {
-            randomAccessFile.seek(offset);
-            for (int i = 0; i < length; ++i) {
-                result[i] = randomAccessFile.read();
-            }
-        } catch (IOException e) {
-            throw new ROMAccessException(
-                    String.format("Error while reading offset 0x%X in ROM of size 0x%X", offset, size), e);
-        }
-
         for (int i = 0; i < length; ++i) {
-            hasBeenRead[(int) (i+offset)] = true;
+            result[i] = byteBuffer.get(i) & 0xff;
         }
-
         return result;
     }
 
@@ -113,6 +165,11 @@ public class FileROM implements ROM {
 
     @Override
     public boolean hasBeenRead(long offset) {
-        return hasBeenRead[(int) offset];
+        return coverage.isRead(offset);
+    }
+
+    @Override
+    public ROMCoverage getCoverage() {
+        return coverage;
     }
 }
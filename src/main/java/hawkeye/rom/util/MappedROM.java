@@ -0,0 +1,170 @@
+package hawkeye.rom.util;
+
+import hawkeye.rom.exceptions.ROMAccessException;
+import org.apache.commons.codec.binary.Hex;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+public class MappedROM implements ROM {
+    private final MappedByteBuffer buffer;
+    private final long size;
+    private final ROMCoverage coverage;
+
+    private volatile String md5sum = null;
+
+    public MappedROM(String filename) throws IOException {
+        this(new File(filename));
+    }
+
+    public MappedROM(File file) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+             FileChannel fileChannel = randomAccessFile.getChannel()) {
+            size = fileChannel.size();
+            buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        coverage = new ROMCoverage(size);
+    }
+
+    // Hashing the whole ROM is only needed to identify it, so it's deferred until someone asks
+    @Override
+    public String getMd5sum() {
+        String result = md5sum;
+        if (result == null) {
+            synchronized (this) {
+                result = md5sum;
+                if (result == null) {
+                    md5sum = result = calculateMd5sum(buffer);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static String calculateMd5sum(MappedByteBuffer buffer) {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not supported on this platform", e);
+        }
+        messageDigest.update(buffer.duplicate());
+        return Hex.encodeHexString(messageDigest.digest());
+    }
+
+    @Override
+    public int read(long offset) throws ROMAccessException {
+        int result = peek(offset);
+        coverage.mark(offset);
+        return result;
+    }
+
+    @Override
+    public int peek(long offset) throws ROMAccessException {
+        if ((offset < 0) || (offset >= size)) {
+            throw new ROMAccessException(
+                    String.format("Cannot read out-of-range offset 0x%X in ROM of size 0x%X", offset, size));
+        }
+
+        return buffer.get((int) offset) & 0xff;
+    }
+
+    @Override
+    public long readMultiLittleEndian(long offset, int length) throws ROMAccessException {
+        if ((offset < 0) || (offset + length - 1 >= size)) {
+            throw new ROMAccessException(
+                    String.format("Cannot read out-of-range offset 0x%X in ROM of size 0x%X", offset + length - 1, size));
+        }
+
+        long result = 0;
+        for (int i = 0; i < length; ++i) {
+            result |= ((long) (buffer.get((int) (i+offset)) & 0xff)) << (8 * i);
+        }
+
+        coverage.markRange(offset, length);
+
+        return result;
+    }
+
+    @Override
+    public int[] readArray(long offset, int length) throws ROMAccessException {
+        if ((offset < 0) || (offset + length - 1 >= size)) {
+            throw new ROMAccessException(
+                    String.format("Cannot read out-of-range offset 0x%X in ROM of size 0x%X", offset + length - 1, size));
+        }
+
+        int[] result = new int[length];
+        for (int i = 0; i < length; ++i) {
+            result[i] = buffer.get((int) (i+offset)) & 0xff;
+        }
+
+        coverage.markRange(offset, length);
+
+        return result;
+    }
+
+    @Override
+    public ROMSlice readSlice(long offset, int length) throws ROMAccessException {
+        ROMSlice result = peekSlice(offset, length);
+
+        coverage.markRange(offset, length);
+
+        return result;
+    }
+
+    @Override
+    public ROMSlice peekSlice(long offset, int length) throws ROMAccessException {
+        if ((offset < 0) || (offset + length - 1 >= size)) {
+            throw new ROMAccessException(
+                    String.format("Cannot read out-of-range offset 0x%X in ROM of size 0x%X", offset + length - 1, size));
+        }
+
+        return (length == 0) ? ROMSlice.EMPTY : new ByteBufferSlice(buffer, (int) offset, length);
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public boolean hasBeenRead(long offset) {
+        return coverage.isRead(offset);
+    }
+
+    @Override
+    public ROMCoverage getCoverage() {
+        return coverage;
+    }
+
+    private static class ByteBufferSlice extends ROMSlice {
+        private final ByteBuffer buffer;
+        private final int offset;
+        private final int length;
+
+        private ByteBufferSlice(ByteBuffer buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public int get(int index) {
+            if ((index < 0) || (index >= length)) {
+                throw new IndexOutOfBoundsException("Index " + index + " is out of range for slice of length " + length);
+            }
+            return buffer.get(offset + index) & 0xff;
+        }
+    }
+}
@@ -2,11 +2,21 @@ package hawkeye.rom.util;
 
 import hawkeye.rom.exceptions.ROMAccessException;
 
+/**
+ * Read-only access to a ROM image. Implementations must be safe to share between threads: reads are positional
+ * and do not depend on any shared cursor, and the read coverage reported by {@link #hasBeenRead(long)} may be
+ * updated by several readers at once. The peek methods read without marking anything as read, for callers that
+ * only mark what they end up using.
+ */
 public interface ROM {
     int read(long offset) throws ROMAccessException;
     long readMultiLittleEndian(long offset, int length) throws ROMAccessException;
     int[] readArray(long offset, int length) throws ROMAccessException;
+    ROMSlice readSlice(long offset, int length) throws ROMAccessException;
+    int peek(long offset) throws ROMAccessException;
+    ROMSlice peekSlice(long offset, int length) throws ROMAccessException;
     String getMd5sum();
     long size();
     boolean hasBeenRead(long offset);
+    ROMCoverage getCoverage();
 }
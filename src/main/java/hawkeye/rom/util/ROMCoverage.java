@@ -0,0 +1,130 @@
+package hawkeye.rom.util;
+
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records which bytes of a ROM have been read, one bit per byte. Safe for concurrent writers; marking never blocks.
+ */
+public class ROMCoverage {
+    private static final int BITS_PER_WORD_SHIFT = 6;
+    private static final long ALL_BITS = -1L;
+
+    @Value
+    public static class Run {
+        private long start;
+        private long end;
+
+        public long length() {
+            return end - start;
+        }
+    }
+
+    private final AtomicLongArray words;
+    private final long size;
+
+    public ROMCoverage(long size) {
+        this.size = size;
+        this.words = new AtomicLongArray((int) ((size + 63) >>> BITS_PER_WORD_SHIFT));
+    }
+
+    public void mark(long offset) {
+        setBits((int) (offset >>> BITS_PER_WORD_SHIFT), 1L << offset);
+    }
+
+    public void markRange(long offset, int length) {
+        if (length <= 0) {
+            return;
+        }
+
+        long end = offset + length;
+        int firstWordIndex = (int) (offset >>> BITS_PER_WORD_SHIFT);
+        int lastWordIndex = (int) ((end - 1) >>> BITS_PER_WORD_SHIFT);
+        long firstWordMask = ALL_BITS << offset;
+        long lastWordMask = ALL_BITS >>> -end;
+
+        if (firstWordIndex == lastWordIndex) {
+            setBits(firstWordIndex, firstWordMask & lastWordMask);
+            return;
+        }
+
+        setBits(firstWordIndex, firstWordMask);
+        for (int i = firstWordIndex + 1; i < lastWordIndex; ++i) {
+            setBits(i, ALL_BITS);
+        }
+        setBits(lastWordIndex, lastWordMask);
+    }
+
+    private void setBits(int wordIndex, long mask) {
+        long word;
+        do {
+            word = words.get(wordIndex);
+            if ((word & mask) == mask) {
+                return;
+            }
+        } while (!words.compareAndSet(wordIndex, word, word | mask));
+    }
+
+    public boolean isRead(long offset) {
+        return (words.get((int) (offset >>> BITS_PER_WORD_SHIFT)) & (1L << offset)) != 0;
+    }
+
+    public long nextUnread(long from) {
+        return nextBit(from, true);
+    }
+
+    public long nextRead(long from) {
+        return nextBit(from, false);
+    }
+
+    /*
+    Returns the first offset at or after the given one whose bit is clear (if lookingForUnread) or set, or -1 if
+    there is none before the end of the ROM.
+    */
+    private long nextBit(long from, boolean lookingForUnread) {
+        if ((from < 0) || (from >= size)) {
+            return -1;
+        }
+
+        int wordIndex = (int) (from >>> BITS_PER_WORD_SHIFT);
+        long word = lookingForUnread ? ~words.get(wordIndex) : words.get(wordIndex);
+        word &= ALL_BITS << from;
+
+        while (true) {
+            if (word != 0) {
+                long result = ((long) wordIndex << BITS_PER_WORD_SHIFT) + Long.numberOfTrailingZeros(word);
+                return (result < size) ? result : -1;
+            }
+
+            ++wordIndex;
+            if (wordIndex >= words.length()) {
+                return -1;
+            }
+            word = lookingForUnread ? ~words.get(wordIndex) : words.get(wordIndex);
+        }
+    }
+
+    public List<Run> unreadRuns(long start, long end) {
+        List<Run> runs = new ArrayList<>();
+        end = Math.min(end, size);
+
+        long runStart = nextUnread(start);
+        while ((runStart >= 0) && (runStart < end)) {
+            long runEnd = nextRead(runStart);
+            if ((runEnd < 0) || (runEnd > end)) {
+                runEnd = end;
+            }
+            runs.add(new Run(runStart, runEnd));
+            runStart = nextUnread(runEnd);
+        }
+
+        return runs;
+    }
+
+    public long size() {
+        return size;
+    }
+}
@@ -0,0 +1,107 @@
+package hawkeye.rom.util;
+
+import com.google.gson.reflect.TypeToken;
+import com.google.inject.Inject;
+import hawkeye.config.util.GsonSingleton;
+import lombok.Value;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the md5sums of ROM files between runs, so that a ROM that hasn't changed since it was last seen doesn't
+ * have to be hashed again. A file counts as unchanged if its path, size and modification time are all the same.
+ */
+public class ROMFingerprintCache {
+    private static final File DEFAULT_CACHE_FILE =
+            new File(System.getProperty("user.home"), ".hawkeye/rom-fingerprints.json");
+
+    @Value
+    private static class Fingerprint {
+        private String path;
+        private long size;
+        private long lastModified;
+        private String md5sum;
+    }
+
+    private final GsonSingleton gson;
+    private final File cacheFile;
+    private final Map<String, Fingerprint> fingerprints = new ConcurrentHashMap<>();
+
+    @Inject
+    public ROMFingerprintCache(GsonSingleton gson) {
+        this(gson, DEFAULT_CACHE_FILE);
+    }
+
+    public ROMFingerprintCache(GsonSingleton gson, File cacheFile) {
+        this.gson = gson;
+        this.cacheFile = cacheFile;
+        load();
+    }
+
+    public Optional<String> getMd5sum(File romFile) {
+        String path = getPath(romFile);
+        Fingerprint fingerprint = fingerprints.get(path);
+        if ((fingerprint != null)
+                && (fingerprint.getSize() == romFile.length())
+                && (fingerprint.getLastModified() == romFile.lastModified())) {
+            return Optional.of(fingerprint.getMd5sum());
+        }
+        return Optional.empty();
+    }
+
+    public void putMd5sum(File romFile, String md5sum) {
+        String path = getPath(romFile);
+        fingerprints.put(path, new Fingerprint(path, romFile.length(), romFile.lastModified(), md5sum));
+        save();
+    }
+
+    private static String getPath(File file) {
+        try {
+            return file.getCanonicalPath();
+        } catch (IOException e) {
+            return file.getAbsolutePath();
+        }
+    }
+
+    // A missing or unreadable cache just means everything gets hashed again
+    private void load() {
+        if (!cacheFile.isFile()) {
+            return;
+        }
+
+        try (Reader reader = new InputStreamReader(new FileInputStream(cacheFile), StandardCharsets.UTF_8)) {
+            List<Fingerprint> savedFingerprints =
+                    gson.getGson().fromJson(reader, new TypeToken<List<Fingerprint>>() {}.getType());
+            if (savedFingerprints != null) {
+                for (Fingerprint fingerprint : savedFingerprints) {
+                    fingerprints.put(fingerprint.getPath(), fingerprint);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Ignoring unreadable ROM fingerprint cache " + cacheFile + ": " + e.getMessage());
+        }
+    }
+
+    // Written to a temporary file first, so that a crash never leaves a half-written cache behind
+    private synchronized void save() {
+        File directory = cacheFile.getAbsoluteFile().getParentFile();
+        try {
+            Files.createDirectories(directory.toPath());
+            File temporaryFile = File.createTempFile("rom-fingerprints", ".json", directory);
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(temporaryFile), StandardCharsets.UTF_8)) {
+                gson.getGson().toJson(new ArrayList<>(fingerprints.values()), writer);
+            }
+            Files.move(temporaryFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.out.println("Could not save ROM fingerprint cache " + cacheFile + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package hawkeye.rom.util;
+
+import java.util.Arrays;
+
+/**
+ * A read-only view of a contiguous range of ROM bytes. Bytes are fetched from the backing storage on access, so
+ * creating a slice does not copy anything.
+ */
+public abstract class ROMSlice {
+    public static final ROMSlice EMPTY = of(new int[0]);
+
+    public abstract int length();
+
+    public abstract int get(int index);
+
+    public int[] toArray() {
+        int[] result = new int[length()];
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = get(i);
+        }
+        return result;
+    }
+
+    public static ROMSlice of(int[] data) {
+        return of(data, 0, data.length);
+    }
+
+    public static ROMSlice of(int[] data, int offset, int length) {
+        return new IntArraySlice(data, offset, length);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        } else if (!(obj instanceof ROMSlice)) {
+            return false;
+        }
+
+        ROMSlice other = (ROMSlice) obj;
+        if (length() != other.length()) {
+            return false;
+        }
+        for (int i = 0; i < length(); ++i) {
+            if (get(i) != other.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 1;
+        for (int i = 0; i < length(); ++i) {
+            result = 31 * result + get(i);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    private static class IntArraySlice extends ROMSlice {
+        private final int[] data;
+        private final int offset;
+        private final int length;
+
+        private IntArraySlice(int[] data, int offset, int length) {
+            this.data = data;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public int get(int index) {
+            if ((index < 0) || (index >= length)) {
+                throw new IndexOutOfBoundsException("Index " + index + " is out of range for slice of length " + length);
+            }
+            return data[offset + index];
+        }
+
+        @Override
+        public int[] toArray() {
+            return Arrays.copyOfRange(data, offset, offset + length);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package hawkeye.rom.util;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Walks forward once through a list of regions, yielding the first unread offset of each unread block. The coverage
+ * is consulted lazily, so anything marked as read between calls (e.g. by parsing the block that was just yielded)
+ * is skipped without being rescanned.
+ */
+public class UnreadOffsetIterator implements PrimitiveIterator.OfLong {
+    private final ROMCoverage coverage;
+    private final Iterator<ROMCoverage.Run> regions;
+
+    private ROMCoverage.Run currentRegion;
+    private long position;
+    private long nextOffset = -1;
+
+    public UnreadOffsetIterator(ROMCoverage coverage, List<ROMCoverage.Run> regions) {
+        this.coverage = coverage;
+        this.regions = regions.iterator();
+        advanceRegion();
+    }
+
+    private boolean advanceRegion() {
+        if (!regions.hasNext()) {
+            currentRegion = null;
+            return false;
+        }
+        currentRegion = regions.next();
+        position = currentRegion.getStart();
+        return true;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextOffset >= 0) {
+            return true;
+        }
+
+        while (currentRegion != null) {
+            long offset = coverage.nextUnread(position);
+            if ((offset >= 0) && (offset < currentRegion.getEnd())) {
+                nextOffset = offset;
+                position = offset + 1;
+                return true;
+            }
+            advanceRegion();
+        }
+
+        return false;
+    }
+
+    @Override
+    public long nextLong() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        long result = nextOffset;
+        nextOffset = -1;
+        return result;
+    }
+}
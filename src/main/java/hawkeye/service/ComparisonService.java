@@ -1,60 +1,230 @@
 package hawkeye.service;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashCode;
+import com.google.common.util.concurrent.MoreExecutors;
 import hawkeye.game.model.Game;
 import hawkeye.game.model.ScriptIndexEntry;
+import hawkeye.graph.model.CompactGraph;
 import hawkeye.graph.model.GraphComparison;
 import hawkeye.graph.model.GraphNode;
 import hawkeye.graph.util.GraphComparer;
 import hawkeye.service.filters.GraphFilter;
+import hawkeye.service.filters.GraphGrouper;
 import hawkeye.service.modules.exceptions.ModuleException;
+import hawkeye.service.modules.iface.ComparisonSink;
 import hawkeye.service.modules.iface.GameModule;
+import hawkeye.service.modules.iface.PairViewModuleFactory;
 import hawkeye.service.modules.iface.ViewModule;
 import lombok.AllArgsConstructor;
+import lombok.Value;
 
 import java.io.File;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @AllArgsConstructor
 public class ComparisonService<TGame extends Game, TScriptIndexEntry extends ScriptIndexEntry> {
     protected GameModule<TGame, TScriptIndexEntry> gameModule;
     protected GraphComparer graphComparer;
-    protected List<GraphFilter> graphFilters;
+    protected List<GraphFilter<TScriptIndexEntry>> graphFilters;
+    protected GraphGrouper<TScriptIndexEntry> graphGrouper;
     protected ViewModule<TScriptIndexEntry, TGame> viewModule;
+    protected int numThreads;
 
+    private static final int IN_FLIGHT_ENTRIES_PER_THREAD = 4;
+
+    public ComparisonService(GameModule<TGame, TScriptIndexEntry> gameModule,
+                             GraphComparer graphComparer,
+                             List<GraphFilter<TScriptIndexEntry>> graphFilters,
+                             ViewModule<TScriptIndexEntry, TGame> viewModule) {
+        this(gameModule, graphComparer, graphFilters, viewModule, 1);
+    }
+
+    public ComparisonService(GameModule<TGame, TScriptIndexEntry> gameModule,
+                             GraphComparer graphComparer,
+                             List<GraphFilter<TScriptIndexEntry>> graphFilters,
+                             ViewModule<TScriptIndexEntry, TGame> viewModule,
+                             int numThreads) {
+        this(gameModule, graphComparer, graphFilters, GraphGrouper.none(), viewModule, numThreads);
+    }
+
+    /** Compares all of the games side by side */
     public void compare(List<String> filenames) throws ModuleException {
         List<File> files = getFiles(filenames);
 
         List<TGame> games = getGames(files);
 
-        viewComparisons(games);
+        List<ComparisonOutput> comparisonOutputs = ImmutableList.of(new ComparisonOutput(
+                IntStream.range(0, games.size()).boxed().collect(Collectors.toList()), viewModule, false));
+
+        viewComparisons(games, comparisonOutputs);
 
-        viewLines(games);
+        viewLines(games, comparisonOutputs);
     }
 
-    private void viewComparisons(List<TGame> games) throws ModuleException {
+    /**
+     * Compares every pair of games, writing each pair to its own view module. Every game is still only parsed once per
+     * index entry, and pairs whose graphs for an entry are identical leave that entry out.
+     */
+    public void comparePairs(List<String> filenames,
+                             PairViewModuleFactory<TScriptIndexEntry, TGame> pairViewModuleFactory)
+            throws ModuleException {
+        List<File> files = getFiles(filenames);
+
+        List<TGame> games = getGames(files);
+
+        List<ComparisonOutput> comparisonOutputs = new ArrayList<>();
+        for (int i = 0; i < games.size(); ++i) {
+            for (int j = i + 1; j < games.size(); ++j) {
+                comparisonOutputs.add(new ComparisonOutput(
+                        ImmutableList.of(i, j), pairViewModuleFactory.create(i, j), true));
+            }
+        }
+
+        viewComparisons(games, comparisonOutputs);
+
+        viewLines(games, comparisonOutputs);
+    }
+
+    @Value
+    private class ComparisonOutput {
+        // Positions of the compared games in the list of all games
+        private List<Integer> gameIndexes;
+        private ViewModule<TScriptIndexEntry, TGame> viewModule;
+        private boolean isSkipIdentical;
+    }
+
+    /*
+    Comparisons flow through a pipeline: entries are parsed and compared on a pool of threads, then filtered, grouped
+    and handed to the views in index order as soon as each one is done. Each game's graph for an entry is parsed once
+    and shared by every output that compares that game. At most a few entries per thread are in flight at a time, and
+    nothing holds on to a graph or comparison once the views have it, so memory use does not grow with the size of
+    the index or the number of outputs. Output is exactly the same as from a sequential run.
+    */
+    private void viewComparisons(List<TGame> games, List<ComparisonOutput> comparisonOutputs)
+            throws ModuleException {
         List<TScriptIndexEntry> index = gameModule.getIndex(games.get(0));
 
-        List<GraphComparison<String>> graphComparisons = new ArrayList<>(index.size());
-        for (TScriptIndexEntry indexEntry : index) {
-            System.out.println("Comparing " + indexEntry);
-            List<GraphNode<String>> graphs = getGraphs(games, indexEntry);
+        GraphFilter<TScriptIndexEntry> graphFilter = GraphFilter.allOf(graphFilters);
+        List<BiPredicate<TScriptIndexEntry, GraphComparison<String>>> filterPasses =
+                new ArrayList<>(comparisonOutputs.size());
+        List<BiFunction<TScriptIndexEntry, GraphComparison<String>, Optional<TScriptIndexEntry>>> groupPasses =
+                new ArrayList<>(comparisonOutputs.size());
+        for (int i = 0; i < comparisonOutputs.size(); ++i) {
+            filterPasses.add(graphFilter.newPass());
+            groupPasses.add(graphGrouper.newPass());
+        }
+
+        ExecutorService executorService = (numThreads > 1)
+                ? Executors.newFixedThreadPool(numThreads)
+                : MoreExecutors.sameThreadExecutor();
+        int maximumInFlight = numThreads * IN_FLIGHT_ENTRIES_PER_THREAD;
+
+        List<ComparisonSink<TScriptIndexEntry>> comparisonSinks = new ArrayList<>(comparisonOutputs.size());
+        try {
+            for (ComparisonOutput comparisonOutput : comparisonOutputs) {
+                comparisonSinks.add(comparisonOutput.getViewModule().startComparisons(
+                        select(games, comparisonOutput.getGameIndexes())));
+            }
+
+            Deque<PendingComparison<TScriptIndexEntry>> pendingComparisons = new ArrayDeque<>(maximumInFlight);
+            for (TScriptIndexEntry indexEntry : index) {
+                pendingComparisons.add(new PendingComparison<>(indexEntry,
+                        executorService.submit(() -> getComparisons(games, indexEntry, comparisonOutputs))));
+
+                if (pendingComparisons.size() >= maximumInFlight) {
+                    filterAndView(pendingComparisons.remove(), filterPasses, groupPasses, comparisonSinks);
+                }
+            }
+            while (!pendingComparisons.isEmpty()) {
+                filterAndView(pendingComparisons.remove(), filterPasses, groupPasses, comparisonSinks);
+            }
+        } catch (ModuleException | RuntimeException e) {
+            for (ComparisonSink<TScriptIndexEntry> comparisonSink : comparisonSinks) {
+                comparisonSink.abort();
+            }
+            throw e;
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        for (ComparisonSink<TScriptIndexEntry> comparisonSink : comparisonSinks) {
+            comparisonSink.finish();
+        }
+    }
 
-            GraphComparison<String> graphComparison = graphComparer.compare(graphs);
+    @Value
+    private static class PendingComparison<TScriptIndexEntry> {
+        private TScriptIndexEntry indexEntry;
+        // One comparison per output, or null where the output skips the entry
+        private Future<List<GraphComparison<String>>> future;
+    }
 
-            graphComparisons.add(graphComparison);
+    private void filterAndView(PendingComparison<TScriptIndexEntry> pendingComparison,
+                               List<BiPredicate<TScriptIndexEntry, GraphComparison<String>>> filterPasses,
+                               List<BiFunction<TScriptIndexEntry, GraphComparison<String>, Optional<TScriptIndexEntry>>>
+                                       groupPasses,
+                               List<ComparisonSink<TScriptIndexEntry>> comparisonSinks) throws ModuleException {
+        List<GraphComparison<String>> graphComparisons;
+        try {
+            graphComparisons = pendingComparison.getFuture().get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ModuleException) {
+                throw (ModuleException) e.getCause();
+            }
+            throw new ModuleException("Could not compare script", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ModuleException("Interrupted while comparing scripts", e);
         }
 
-        for (GraphFilter graphFilter : graphFilters) {
-            graphFilter.applyFilter(index, graphComparisons);
+        TScriptIndexEntry indexEntry = pendingComparison.getIndexEntry();
+        for (int i = 0; i < graphComparisons.size(); ++i) {
+            GraphComparison<String> graphComparison = graphComparisons.get(i);
+            if ((graphComparison != null) && filterPasses.get(i).test(indexEntry, graphComparison)) {
+                comparisonSinks.get(i).add(indexEntry, graphComparison,
+                        groupPasses.get(i).apply(indexEntry, graphComparison));
+            }
         }
+    }
+
+    private List<GraphComparison<String>> getComparisons(List<TGame> games, TScriptIndexEntry indexEntry,
+                                                         List<ComparisonOutput> comparisonOutputs)
+            throws ModuleException {
+        System.out.println("Comparing " + indexEntry);
+        List<CompactGraph<String>> graphs = getGraphs(games, indexEntry);
 
-        viewModule.viewComparisons(index, games, graphComparisons);
+        List<GraphComparison<String>> graphComparisons = new ArrayList<>(comparisonOutputs.size());
+        for (ComparisonOutput comparisonOutput : comparisonOutputs) {
+            List<CompactGraph<String>> outputGraphs = select(graphs, comparisonOutput.getGameIndexes());
+            if (comparisonOutput.isSkipIdentical() && isIdentical(outputGraphs)) {
+                graphComparisons.add(null);
+            } else {
+                graphComparisons.add(graphComparer.compareCompact(outputGraphs));
+            }
+        }
+        return graphComparisons;
+    }
+
+    private boolean isIdentical(List<CompactGraph<String>> graphs) {
+        HashCode fingerprint = graphs.get(0).fingerprint();
+        return graphs.stream().allMatch(graph -> graph.fingerprint().equals(fingerprint));
     }
 
-    private void viewLines(List<TGame> games) throws ModuleException {
+    private void viewLines(List<TGame> games, List<ComparisonOutput> comparisonOutputs) throws ModuleException {
         List<List<TScriptIndexEntry>> allIndexes = new ArrayList<>(games.size());
         List<List<GraphNode<String>>> allLines = new ArrayList<>(games.size());
 
@@ -62,17 +232,15 @@ public class ComparisonService<TGame extends Game, TScriptIndexEntry extends Scr
             List<TScriptIndexEntry> index = new ArrayList<>();
             List<GraphNode<String>> lines = new ArrayList<>();
 
-            while (true) {
-                Optional<TScriptIndexEntry> unusedScriptIndexEntry = gameModule.getUnusedScriptIndexEntry(game);
-                if (!unusedScriptIndexEntry.isPresent()) {
-                    break;
-                }
-                System.out.println("Comparing " + unusedScriptIndexEntry.get());
+            Iterator<TScriptIndexEntry> unusedScriptIndexEntries = gameModule.getUnusedScriptIndexEntries(game);
+            while (unusedScriptIndexEntries.hasNext()) {
+                TScriptIndexEntry unusedScriptIndexEntry = unusedScriptIndexEntries.next();
+                System.out.println("Comparing " + unusedScriptIndexEntry);
 
                 try {
-                    GraphNode<String> line = gameModule.parseSingleLine(game, unusedScriptIndexEntry.get());
+                    GraphNode<String> line = gameModule.parseSingleLine(game, unusedScriptIndexEntry);
 
-                    index.add(unusedScriptIndexEntry.get());
+                    index.add(unusedScriptIndexEntry);
                     lines.add(line);
                 } catch (ModuleException e) {
                     continue;
@@ -83,7 +251,19 @@ public class ComparisonService<TGame extends Game, TScriptIndexEntry extends Scr
             allLines.add(lines);
         }
 
-        viewModule.viewLines(allIndexes, games, allLines);
+        for (ComparisonOutput comparisonOutput : comparisonOutputs) {
+            List<Integer> gameIndexes = comparisonOutput.getGameIndexes();
+            comparisonOutput.getViewModule().viewLines(
+                    select(allIndexes, gameIndexes), select(games, gameIndexes), select(allLines, gameIndexes));
+        }
+    }
+
+    private static <T> List<T> select(List<T> list, List<Integer> indexes) {
+        List<T> result = new ArrayList<>(indexes.size());
+        for (int index : indexes) {
+            result.add(list.get(index));
+        }
+        return result;
     }
 
     private List<File> getFiles(List<String> filenames) {
@@ -92,16 +272,36 @@ public class ComparisonService<TGame extends Game, TScriptIndexEntry extends Scr
                 .collect(Collectors.toList());
     }
 
+    // Loading a ROM is mostly I/O and hashing, so all of them are loaded at the same time
     private List<TGame> getGames(List<File> files) throws ModuleException {
-        List<TGame> games = new ArrayList<>(files.size());
-        for (File file : files) {
-            games.add(gameModule.getGame(file));
+        ExecutorService executorService = Executors.newFixedThreadPool(files.size());
+        try {
+            List<Future<TGame>> futures = new ArrayList<>(files.size());
+            for (File file : files) {
+                futures.add(executorService.submit(() -> gameModule.getGame(file)));
+            }
+
+            List<TGame> games = new ArrayList<>(files.size());
+            for (Future<TGame> future : futures) {
+                games.add(future.get());
+            }
+            return games;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ModuleException) {
+                throw (ModuleException) e.getCause();
+            }
+            throw new ModuleException("Could not load game", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ModuleException("Interrupted while loading games", e);
+        } finally {
+            executorService.shutdownNow();
         }
-        return games;
     }
 
-    private List<GraphNode<String>> getGraphs(List<TGame> games, TScriptIndexEntry scriptIndexEntry) throws ModuleException {
-        List<GraphNode<String>> graphs = new ArrayList<>(games.size());
+    private List<CompactGraph<String>> getGraphs(List<TGame> games, TScriptIndexEntry scriptIndexEntry)
+            throws ModuleException {
+        List<CompactGraph<String>> graphs = new ArrayList<>(games.size());
         for (TGame game : games) {
             graphs.add(gameModule.parse(game, scriptIndexEntry));
         }
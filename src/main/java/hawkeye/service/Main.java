@@ -9,12 +9,18 @@ import hawkeye.graph.util.GraphComparer;
 import hawkeye.service.filters.DedupGraphFilter;
 import hawkeye.service.filters.DifferencesOnlyFilter;
 import hawkeye.service.filters.GraphFilter;
+import hawkeye.service.filters.GraphGrouper;
+import hawkeye.service.filters.NearDuplicateGraphGrouper;
 import hawkeye.service.filters.RemoveEmptyFilter;
+import hawkeye.service.modules.exceptions.ModuleException;
 import hawkeye.service.modules.mother2.Mother2GameModule;
 import hawkeye.service.modules.mother2.Mother2HtmlFileViewModule;
+import hawkeye.service.util.LineMatchChecker;
 import hawkeye.view.FreemarkerConfiguration;
 import org.apache.commons.cli.*;
+import org.apache.commons.io.FilenameUtils;
 
+import java.io.File;
 import java.util.List;
 
 public class Main {
@@ -33,40 +39,86 @@ public class Main {
                 .desc("Output directory")
                 .required()
                 .build());
+        options.addOption(Option.builder("t")
+                .argName("threads")
+                .hasArg()
+                .desc("Number of threads to compare scripts with (default: number of processors)")
+                .build());
+        options.addOption(Option.builder("p")
+                .longOpt("pairs")
+                .desc("Compare every pair of ROMs, writing each pair to its own subdirectory of the output directory")
+                .build());
+        options.addOption(Option.builder("n")
+                .longOpt("near-duplicates")
+                .desc("Group scripts whose differences are nearly the same as those of one shown earlier, such as NPCs "
+                        + "that only differ by a name or a number, under that script")
+                .build());
 
         CommandLineParser parser = new DefaultParser();
         try {
             CommandLine line = parser.parse(options, args);
 
             String[] roms = line.getOptionValues('r');
-            if (roms.length != 2) {
-                System.out.println("Currently only running this program with exactly 2 ROM files is supported");
+            if (roms.length < 2) {
+                System.out.println("At least 2 ROM files are needed to compare");
                 System.exit(0);
             }
             String outputDir = line.getOptionValue('o');
+            int numThreads = Integer.parseInt(
+                    line.getOptionValue('t', Integer.toString(Runtime.getRuntime().availableProcessors())));
+            if (numThreads < 1) {
+                throw new ParseException("Number of threads must be at least 1");
+            }
 
-            generateComparison(roms[0], roms[1], outputDir);
+            generateComparison(ImmutableList.copyOf(roms), outputDir, numThreads, line.hasOption('p'),
+                    line.hasOption('n'));
 
-        } catch (ParseException e) {
+        } catch (ParseException | NumberFormatException e) {
             HelpFormatter formatter = new HelpFormatter();
             formatter.printHelp( "GameScriptComparer", options );
         }
     }
 
-    private static void generateComparison(String romFilename1, String romFilename2, String outputPath) throws Exception {
+    private static void generateComparison(List<String> romFilenames, String outputPath, int numThreads,
+                                           boolean isPairs, boolean isNearDuplicatesGrouped) throws Exception {
         Injector injector = Guice.createInjector(new Module());
 
         Mother2GameModule mother2GameModule = injector.getInstance(Mother2GameModule.class);
         GraphComparer graphComparer = injector.getInstance(GraphComparer.class);
         FreemarkerConfiguration freemarkerConfiguration = injector.getInstance(FreemarkerConfiguration.class);
+        LineMatchChecker lineMatchChecker = injector.getInstance(LineMatchChecker.class);
 
-        Mother2HtmlFileViewModule mother2HtmlFileViewModule = new Mother2HtmlFileViewModule(outputPath, freemarkerConfiguration);
+        Mother2HtmlFileViewModule mother2HtmlFileViewModule =
+                new Mother2HtmlFileViewModule(outputPath, freemarkerConfiguration, lineMatchChecker);
 
         List<GraphFilter> graphFilters = ImmutableList.of(new RemoveEmptyFilter(), new DedupGraphFilter(), injector.getInstance(DifferencesOnlyFilter.class));
+        GraphGrouper graphGrouper = isNearDuplicatesGrouped ? new NearDuplicateGraphGrouper() : GraphGrouper.none();
 
         ComparisonService<Mother2Game, Mother2ScriptIndexEntry> comparisonService =
-                new ComparisonService(mother2GameModule, graphComparer, graphFilters, mother2HtmlFileViewModule);
+                new ComparisonService(mother2GameModule, graphComparer, graphFilters, graphGrouper, mother2HtmlFileViewModule,
+                        numThreads);
+
+        if (isPairs) {
+            comparisonService.comparePairs(romFilenames, (i, j) -> {
+                String pairDirectory = getPairDirectoryName(romFilenames, i, j);
+                try {
+                    return new Mother2HtmlFileViewModule(
+                            new File(outputPath, pairDirectory).getPath(), freemarkerConfiguration, lineMatchChecker);
+                } catch (Exception e) {
+                    throw new ModuleException("Could not create view for " + pairDirectory, e);
+                }
+            });
+        } else {
+            comparisonService.compare(romFilenames);
+        }
+    }
 
-        comparisonService.compare(ImmutableList.of(romFilename1, romFilename2));
+    /*
+    ROMs are numbered by their position on the command line, so pairs of ROMs that share a base name, such as two
+    versions of the same file in different directories, still get their own directories.
+    */
+    static String getPairDirectoryName(List<String> romFilenames, int i, int j) {
+        return (i + 1) + "-" + FilenameUtils.getBaseName(romFilenames.get(i))
+                + "-vs-" + (j + 1) + "-" + FilenameUtils.getBaseName(romFilenames.get(j));
     }
 }
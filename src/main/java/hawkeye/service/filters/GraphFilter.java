@@ -4,7 +4,54 @@ import hawkeye.game.model.ScriptIndexEntry;
 import hawkeye.graph.model.GraphComparison;
 
 import java.util.List;
+import java.util.function.BiPredicate;
 
 public interface GraphFilter<TScriptIndexEntry extends ScriptIndexEntry> {
-    void applyFilter(List<TScriptIndexEntry> index, List<GraphComparison<String>> graphComparisons);
+    /**
+     * Starts a new pass over a sequence of comparisons. The returned predicate is called once per entry, in index
+     * order, and returns whether the entry should be kept. Filters that depend on earlier entries keep that state in
+     * the predicate, so every pass starts fresh.
+     */
+    BiPredicate<TScriptIndexEntry, GraphComparison<String>> newPass();
+
+    /**
+     * Fuses several filters into one. Each entry goes through the filters in order and stops at the first one that
+     * rejects it, so later filters only see the entries that earlier ones kept.
+     */
+    static <TScriptIndexEntry extends ScriptIndexEntry> GraphFilter<TScriptIndexEntry> allOf(
+            List<? extends GraphFilter<TScriptIndexEntry>> graphFilters) {
+        return () -> {
+            @SuppressWarnings("unchecked")
+            BiPredicate<TScriptIndexEntry, GraphComparison<String>>[] passes = new BiPredicate[graphFilters.size()];
+            for (int i = 0; i < passes.length; ++i) {
+                passes[i] = graphFilters.get(i).newPass();
+            }
+
+            return (indexEntry, graphComparison) -> {
+                for (BiPredicate<TScriptIndexEntry, GraphComparison<String>> pass : passes) {
+                    if (!pass.test(indexEntry, graphComparison)) {
+                        return false;
+                    }
+                }
+                return true;
+            };
+        };
+    }
+
+    /* Removes the entries that do not pass, moving the kept ones down in place so the whole pass is linear */
+    default void applyFilter(List<TScriptIndexEntry> index, List<GraphComparison<String>> graphComparisons) {
+        BiPredicate<TScriptIndexEntry, GraphComparison<String>> pass = newPass();
+        int numKept = 0;
+        for (int i = 0; i < graphComparisons.size(); ++i) {
+            TScriptIndexEntry indexEntry = index.get(i);
+            GraphComparison<String> graphComparison = graphComparisons.get(i);
+            if (pass.test(indexEntry, graphComparison)) {
+                index.set(numKept, indexEntry);
+                graphComparisons.set(numKept, graphComparison);
+                ++numKept;
+            }
+        }
+        index.subList(numKept, index.size()).clear();
+        graphComparisons.subList(numKept, graphComparisons.size()).clear();
+    }
 }
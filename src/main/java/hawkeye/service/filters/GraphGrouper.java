@@ -0,0 +1,21 @@
+package hawkeye.service.filters;
+
+import hawkeye.game.model.ScriptIndexEntry;
+import hawkeye.graph.model.GraphComparison;
+
+import java.util.Optional;
+import java.util.function.BiFunction;
+
+public interface GraphGrouper<TScriptIndexEntry extends ScriptIndexEntry> {
+    /**
+     * Starts a new pass over a sequence of comparisons. The returned function is called once per kept entry, in index
+     * order, and returns the earlier entry that represents the group the entry belongs to, or nothing if the entry is
+     * not grouped with any earlier one. Unlike a filter, a grouper never leaves an entry out.
+     */
+    BiFunction<TScriptIndexEntry, GraphComparison<String>, Optional<TScriptIndexEntry>> newPass();
+
+    /** A grouper that leaves every entry on its own */
+    static <TScriptIndexEntry extends ScriptIndexEntry> GraphGrouper<TScriptIndexEntry> none() {
+        return () -> (indexEntry, graphComparison) -> Optional.empty();
+    }
+}
@@ -0,0 +1,171 @@
+package hawkeye.service.filters;
+
+import hawkeye.game.model.ScriptIndexEntry;
+import hawkeye.graph.model.GraphComparison;
+
+import java.util.*;
+import java.util.function.BiFunction;
+
+/**
+ * Groups comparisons whose differences are nearly the same as those of an earlier comparison, such as NPCs that only
+ * differ by a name or a number, under that earlier comparison. Only the lines that differ between the games are
+ * compared, and each game's lines are kept apart, so two entries are only grouped if each game's side of their
+ * differences is alike. Similarity is the Jaccard similarity of the character shingles of those lines, estimated
+ * with MinHash signatures. Signatures are split into bands and bucketed by locality sensitive hashing, so each entry
+ * is only checked against the group representatives that share a band with it rather than against all of them.
+ */
+public class NearDuplicateGraphGrouper<TScriptIndexEntry extends ScriptIndexEntry>
+        implements GraphGrouper<TScriptIndexEntry> {
+    public static final double DEFAULT_MINIMUM_SIMILARITY = 0.8;
+
+    private static final int SHINGLE_LENGTH = 4;
+    private static final int NUM_BANDS = 16;
+    private static final int ROWS_PER_BAND = 4;
+    private static final int SIGNATURE_LENGTH = NUM_BANDS * ROWS_PER_BAND;
+    private static final long[] SEEDS = createSeeds();
+
+    private final double minimumSimilarity;
+
+    public NearDuplicateGraphGrouper() {
+        this(DEFAULT_MINIMUM_SIMILARITY);
+    }
+
+    public NearDuplicateGraphGrouper(double minimumSimilarity) {
+        if ((minimumSimilarity <= 0) || (minimumSimilarity > 1)) {
+            throw new IllegalArgumentException("Minimum similarity must be in (0, 1], but was " + minimumSimilarity);
+        }
+        this.minimumSimilarity = minimumSimilarity;
+    }
+
+    @Override
+    public BiFunction<TScriptIndexEntry, GraphComparison<String>, Optional<TScriptIndexEntry>> newPass() {
+        List<TScriptIndexEntry> representatives = new ArrayList<>();
+        List<long[]> representativeSignatures = new ArrayList<>();
+        Map<Long, List<Integer>> bandBuckets = new HashMap<>();
+
+        return (indexEntry, graphComparison) -> {
+            long[] signature = getSignature(graphComparison);
+            if (signature == null) {
+                return Optional.empty();
+            }
+
+            long[] bandKeys = getBandKeys(signature);
+            Set<Integer> checkedCandidates = new HashSet<>();
+            for (long bandKey : bandKeys) {
+                List<Integer> bucket = bandBuckets.get(bandKey);
+                if (bucket == null) {
+                    continue;
+                }
+                for (int candidate : bucket) {
+                    if (checkedCandidates.add(candidate)
+                            && (getSimilarity(signature, representativeSignatures.get(candidate)) >= minimumSimilarity)) {
+                        return Optional.of(representatives.get(candidate));
+                    }
+                }
+            }
+
+            int representative = representatives.size();
+            representatives.add(indexEntry);
+            representativeSignatures.add(signature);
+            for (long bandKey : bandKeys) {
+                bandBuckets.computeIfAbsent(bandKey, key -> new ArrayList<>()).add(representative);
+            }
+            return Optional.empty();
+        };
+    }
+
+    /* Returns null for comparisons without any differing text, which are never grouped */
+    static long[] getSignature(GraphComparison<String> graphComparison) {
+        long[] signature = new long[SIGNATURE_LENGTH];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        boolean hasShingles = false;
+
+        List<List<String>> values = graphComparison.getValues();
+        for (int gameNumber = 0; gameNumber < values.size(); ++gameNumber) {
+            List<String> gameValues = values.get(gameNumber);
+            for (int nodeIndex = 0; nodeIndex < gameValues.size(); ++nodeIndex) {
+                String line = gameValues.get(nodeIndex);
+                if ((line == null) || line.isEmpty()
+                        || (graphComparison.isIsomorphicComparison() && isSameInAllGames(values, nodeIndex))) {
+                    continue;
+                }
+                // Lines shorter than a shingle are a shingle of their own
+                int lastShingleStart = Math.max(line.length() - SHINGLE_LENGTH, 0);
+                for (int start = 0; start <= lastShingleStart; ++start) {
+                    long shingleHash = mix(gameNumber
+                            + hashShingle(line, start, Math.min(start + SHINGLE_LENGTH, line.length())));
+                    for (int i = 0; i < SIGNATURE_LENGTH; ++i) {
+                        long hash = mix(shingleHash ^ SEEDS[i]);
+                        if (hash < signature[i]) {
+                            signature[i] = hash;
+                        }
+                    }
+                    hasShingles = true;
+                }
+            }
+        }
+
+        return hasShingles ? signature : null;
+    }
+
+    // The values of isomorphic comparisons line up by node, so a line that is the same in every game is no difference
+    private static boolean isSameInAllGames(List<List<String>> values, int nodeIndex) {
+        if (nodeIndex >= values.get(0).size()) {
+            return false;
+        }
+        String line = values.get(0).get(nodeIndex);
+        for (List<String> gameValues : values) {
+            if ((nodeIndex >= gameValues.size()) || !Objects.equals(line, gameValues.get(nodeIndex))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static double getSimilarity(long[] a, long[] b) {
+        int numEqual = 0;
+        for (int i = 0; i < SIGNATURE_LENGTH; ++i) {
+            if (a[i] == b[i]) {
+                ++numEqual;
+            }
+        }
+        return (double) numEqual / SIGNATURE_LENGTH;
+    }
+
+    private static long[] getBandKeys(long[] signature) {
+        long[] bandKeys = new long[NUM_BANDS];
+        for (int band = 0; band < NUM_BANDS; ++band) {
+            long bandKey = band;
+            for (int row = band * ROWS_PER_BAND; row < (band + 1) * ROWS_PER_BAND; ++row) {
+                bandKey = mix(bandKey * 31 + signature[row]);
+            }
+            bandKeys[band] = bandKey;
+        }
+        return bandKeys;
+    }
+
+    // FNV-1a over the shingle's characters
+    private static long hashShingle(String line, int start, int end) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = start; i < end; ++i) {
+            hash = (hash ^ line.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    // The SplitMix64 finalizer, which spreads every input bit over the whole output
+    private static long mix(long x) {
+        x = (x ^ (x >>> 30)) * 0xbf58476d1ce4e5b9L;
+        x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+        return x ^ (x >>> 31);
+    }
+
+    private static long[] createSeeds() {
+        Random random = new Random(0x4861776b457965L);
+        long[] seeds = new long[SIGNATURE_LENGTH];
+        for (int i = 0; i < SIGNATURE_LENGTH; ++i) {
+            seeds[i] = random.nextLong();
+        }
+        return seeds;
+    }
+}
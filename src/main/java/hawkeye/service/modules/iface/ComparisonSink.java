@@ -0,0 +1,34 @@
+package hawkeye.service.modules.iface;
+
+import hawkeye.game.model.ScriptIndexEntry;
+import hawkeye.graph.model.GraphComparison;
+import hawkeye.service.modules.exceptions.ModuleException;
+
+import java.util.Optional;
+
+/**
+ * Receives comparisons one at a time, in index order, so they can be rendered and released as they arrive instead
+ * of being collected first.
+ */
+public interface ComparisonSink<TIndexEntry extends ScriptIndexEntry> {
+    default void add(TIndexEntry indexEntry, GraphComparison<String> graphComparison) throws ModuleException {
+        add(indexEntry, graphComparison, Optional.empty());
+    }
+
+    /**
+     * Adds a comparison along with the earlier entry that represents its group, if it was grouped with one. The
+     * representative has always been added already.
+     */
+    void add(TIndexEntry indexEntry, GraphComparison<String> graphComparison, Optional<TIndexEntry> representative)
+            throws ModuleException;
+
+    /**
+     * Called after the last comparison has been added. Blocks until everything has been rendered.
+     */
+    void finish() throws ModuleException;
+
+    /**
+     * Called instead of {@link #finish()} if the comparisons could not all be produced.
+     */
+    void abort();
+}
@@ -0,0 +1,13 @@
+package hawkeye.service.modules.iface;
+
+import hawkeye.game.model.Game;
+import hawkeye.game.model.ScriptIndexEntry;
+import hawkeye.service.modules.exceptions.ModuleException;
+
+/**
+ * Creates the view module that one pair of games is written to when every pair of games is compared. Games are
+ * identified by their position in the list of games being compared.
+ */
+public interface PairViewModuleFactory<TIndexEntry extends ScriptIndexEntry, TGame extends Game> {
+    ViewModule<TIndexEntry, TGame> create(int firstGameIndex, int secondGameIndex) throws ModuleException;
+}
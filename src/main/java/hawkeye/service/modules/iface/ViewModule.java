@@ -6,10 +6,25 @@ import hawkeye.graph.model.GraphComparison;
 import hawkeye.graph.model.GraphNode;
 import hawkeye.service.modules.exceptions.ModuleException;
 
+import java.util.Iterator;
 import java.util.List;
 
 public interface ViewModule <TIndexEntry extends ScriptIndexEntry, TGame extends Game> {
-    void viewComparisons(List<TIndexEntry> index, List<TGame> games, List<GraphComparison<String>> graphComparisons)
-            throws ModuleException;
+    ComparisonSink<TIndexEntry> startComparisons(List<TGame> games) throws ModuleException;
     void viewLines(List<List<TIndexEntry>> indexes, List<TGame> games, List<List<GraphNode<String>>> lines) throws ModuleException;
+
+    default void viewComparisons(List<TIndexEntry> index, List<TGame> games, List<GraphComparison<String>> graphComparisons)
+            throws ModuleException {
+        ComparisonSink<TIndexEntry> comparisonSink = startComparisons(games);
+        try {
+            Iterator<TIndexEntry> indexIterator = index.iterator();
+            for (GraphComparison<String> graphComparison : graphComparisons) {
+                comparisonSink.add(indexIterator.next(), graphComparison);
+            }
+        } catch (ModuleException | RuntimeException e) {
+            comparisonSink.abort();
+            throw e;
+        }
+        comparisonSink.finish();
+    }
 }
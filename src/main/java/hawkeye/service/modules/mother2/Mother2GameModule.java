@@ -4,16 +4,20 @@ import com.google.inject.Inject;
 import hawkeye.game.mother2.games.Mother2Game;
 import hawkeye.game.mother2.games.Mother2ScriptIndexEntry;
 import hawkeye.game.mother2.util.Mother2GameFactory;
+import hawkeye.graph.model.CompactGraph;
 import hawkeye.graph.model.GraphNode;
 import hawkeye.parse.model.ControlCodeUsage;
+import hawkeye.parse.model.ParseBudget;
 import hawkeye.parse.util.TextTreeParser;
-import hawkeye.rom.util.FileROM;
+import hawkeye.rom.util.MappedROM;
 import hawkeye.rom.util.ROM;
+import hawkeye.rom.util.ROMFingerprintCache;
 import hawkeye.service.modules.exceptions.ModuleException;
 import hawkeye.service.modules.iface.GameModule;
 import lombok.AllArgsConstructor;
 
 import java.io.File;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 
@@ -21,12 +25,18 @@ import java.util.Optional;
 public class Mother2GameModule implements GameModule<Mother2Game, Mother2ScriptIndexEntry> {
     private Mother2GameFactory mother2GameFactory;
     private TextTreeParser textTreeParser;
+    private ROMFingerprintCache romFingerprintCache;
 
     @Override
     public Mother2Game getGame(File file) throws ModuleException {
         try {
-            ROM rom = new FileROM(file);
-            return mother2GameFactory.createFromRom(rom);
+            ROM rom = new MappedROM(file);
+            Optional<String> knownMd5sum = romFingerprintCache.getMd5sum(file);
+            Mother2Game game = mother2GameFactory.createFromRom(rom, knownMd5sum);
+            if (!knownMd5sum.isPresent()) {
+                romFingerprintCache.putMd5sum(file, game.getRomType().getMd5sum());
+            }
+            return game;
         } catch (Exception e) {
             throw new ModuleException("Could not create game", e);
         }
@@ -42,25 +52,31 @@ public class Mother2GameModule implements GameModule<Mother2Game, Mother2ScriptI
     }
 
     @Override
-    public Optional<Mother2ScriptIndexEntry> getUnusedScriptIndexEntry(Mother2Game game) {
-        return game.getUnusedScriptIndexEntry();
+    public Iterator<Mother2ScriptIndexEntry> getUnusedScriptIndexEntries(Mother2Game game) {
+        return game.getUnusedScriptIndexEntries();
     }
 
     @Override
-    public GraphNode<String> parse(Mother2Game game, Mother2ScriptIndexEntry scriptIndexEntry) throws ModuleException {
+    public CompactGraph<String> parse(Mother2Game game, Mother2ScriptIndexEntry scriptIndexEntry) throws ModuleException {
+        return parse(game, scriptIndexEntry, ParseBudget.createDefault());
+    }
+
+    @Override
+    public CompactGraph<String> parse(Mother2Game game, Mother2ScriptIndexEntry scriptIndexEntry, ParseBudget parseBudget)
+            throws ModuleException {
         System.out.println("Generating CC graph");
         Optional<GraphNode<ControlCodeUsage>> ccGraph;
         try {
-            ccGraph = game.parseToGraph(scriptIndexEntry);
+            ccGraph = game.parseToGraph(scriptIndexEntry, parseBudget);
         } catch (Exception e) {
             throw new ModuleException("Could not parse script", e);
         }
 
         System.out.println("Generating text graph");
         if (ccGraph.isPresent()) {
-            return textTreeParser.create(ccGraph.get());
+            return textTreeParser.create(CompactGraph.of(ccGraph.get()));
         } else {
-            return new GraphNode<>(null);
+            return CompactGraph.of(new GraphNode<>(null));
         }
     }
 
@@ -1,16 +1,20 @@
 package hawkeye.service.modules.mother2;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import freemarker.template.Template;
 import freemarker.template.TemplateException;
 import hawkeye.game.mother2.games.Mother2Game;
 import hawkeye.game.mother2.games.Mother2ScriptIndexEntry;
+import hawkeye.graph.model.Alignment;
 import hawkeye.graph.model.GraphComparison;
 import hawkeye.graph.model.GraphNode;
 import hawkeye.graph.util.GraphUtils;
 import hawkeye.service.modules.exceptions.ModuleException;
+import hawkeye.service.modules.iface.ComparisonSink;
 import hawkeye.service.modules.iface.ViewModule;
+import hawkeye.service.util.LineDiffer;
 import hawkeye.service.util.LineMatchChecker;
 import hawkeye.view.FreemarkerConfiguration;
 import lombok.Value;
@@ -18,6 +22,7 @@ import org.apache.commons.io.FileUtils;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
 public class Mother2HtmlFileViewModule implements ViewModule<Mother2ScriptIndexEntry, Mother2Game> {
@@ -37,11 +42,25 @@ public class Mother2HtmlFileViewModule implements ViewModule<Mother2ScriptIndexE
             .put("doors.html", ImmutableSet.of(Mother2ScriptIndexEntry.IndexEntryType.DOOR))
             .build();
 
+    private static final Map<Mother2ScriptIndexEntry.IndexEntryType, String> PAGE_FILENAMES_BY_TYPE =
+            getPageFilenamesByType();
+
+    private static final int PAGE_QUEUE_DEPTH = 64;
+    private static final QueuedComparison END_OF_PAGE = new QueuedComparison(null, null, null);
+
     private static final Map<String, Set<Mother2ScriptIndexEntry.IndexEntryType>> LINES_PAGES = ImmutableMap
             .<String, Set<Mother2ScriptIndexEntry.IndexEntryType>>builder()
             .put("other.html", ImmutableSet.of(Mother2ScriptIndexEntry.IndexEntryType.OTHER))
             .build();
 
+    @Value
+    private static class QueuedComparison {
+        private Mother2ScriptIndexEntry indexEntry;
+        private GraphComparison<String> graphComparison;
+        // The entry this one is grouped under, or null
+        private Mother2ScriptIndexEntry representative;
+    }
+
     @Value
     private static class LineViewModel {
         private Mother2ScriptIndexEntry indexEntry;
@@ -57,51 +76,82 @@ public class Mother2HtmlFileViewModule implements ViewModule<Mother2ScriptIndexE
     private Template indexTemplate;
     private Template linesTemplate;
     private LineMatchChecker lineMatchChecker;
+    private LineDiffer lineDiffer;
 
     public Mother2HtmlFileViewModule(String outputDirectory, FreemarkerConfiguration freemarkerConfiguration) throws Exception {
+        this(outputDirectory, freemarkerConfiguration, new LineMatchChecker());
+    }
+
+    public Mother2HtmlFileViewModule(String outputDirectory, FreemarkerConfiguration freemarkerConfiguration,
+                                     LineMatchChecker lineMatchChecker) throws Exception {
         this.outputDirectory = outputDirectory;
 
         indexTemplate = freemarkerConfiguration.getConfiguration().getTemplate(INDEX_TEMPLATE_PATH);
         linesTemplate = freemarkerConfiguration.getConfiguration().getTemplate(LINES_TEMPLATE_PATH);
+        this.lineMatchChecker = lineMatchChecker;
         // TODO use dependency injection for this
-        this.lineMatchChecker = new LineMatchChecker();
+        this.lineDiffer = new LineDiffer();
     }
 
     @Override
-    public void viewComparisons(List<Mother2ScriptIndexEntry> index, List<Mother2Game> games, List<GraphComparison<String>> graphComparisons)
-            throws ModuleException {
-
+    public ComparisonSink<Mother2ScriptIndexEntry> startComparisons(List<Mother2Game> games) throws ModuleException {
         copyStaticResources();
 
-        for (Map.Entry<String, Set<Mother2ScriptIndexEntry.IndexEntryType>> page : COMPARISON_PAGES.entrySet()) {
-            String pageFilename = page.getKey();
-            Set<Mother2ScriptIndexEntry.IndexEntryType> types = page.getValue();
-
-            renderComparisonPage(
-                    pageFilename,
-                    games,
-                    types,
-                    index,
-                    graphComparisons);
-        }
+        return new HtmlComparisonSink(games);
     }
 
+    // Every game's index is split between the lines pages in a single pass
     @Override
     public void viewLines(List<List<Mother2ScriptIndexEntry>> indexes, List<Mother2Game> games, List<List<GraphNode<String>>> lines)
         throws ModuleException {
-        for (Map.Entry<String, Set<Mother2ScriptIndexEntry.IndexEntryType>> page : LINES_PAGES.entrySet()) {
-            String pageFilename = page.getKey();
-            Set<Mother2ScriptIndexEntry.IndexEntryType> types = page.getValue();
-
-            renderLinesPage(
-                    pageFilename,
-                    games,
-                    types,
-                    indexes,
-                    lines);
+        Map<Mother2ScriptIndexEntry.IndexEntryType, Integer> pageNumbersByType =
+                new EnumMap<>(Mother2ScriptIndexEntry.IndexEntryType.class);
+        List<String> pageFilenames = new ArrayList<>(LINES_PAGES.keySet());
+        for (int pageNumber = 0; pageNumber < pageFilenames.size(); ++pageNumber) {
+            for (Mother2ScriptIndexEntry.IndexEntryType type : LINES_PAGES.get(pageFilenames.get(pageNumber))) {
+                pageNumbersByType.put(type, pageNumber);
+            }
+        }
+
+        // For each page, each game's entries and lines on that page
+        List<List<List<Mother2ScriptIndexEntry>>> pageIndexes = new ArrayList<>(pageFilenames.size());
+        List<List<List<GraphNode<String>>>> pageLines = new ArrayList<>(pageFilenames.size());
+        for (int pageNumber = 0; pageNumber < pageFilenames.size(); ++pageNumber) {
+            pageIndexes.add(new ArrayList<>(indexes.size()));
+            pageLines.add(new ArrayList<>(indexes.size()));
+            for (int gameNumber = 0; gameNumber < indexes.size(); ++gameNumber) {
+                pageIndexes.get(pageNumber).add(new ArrayList<>());
+                pageLines.get(pageNumber).add(new ArrayList<>());
+            }
+        }
+        for (int gameNumber = 0; gameNumber < indexes.size(); ++gameNumber) {
+            Iterator<GraphNode<String>> gameLinesIterator = lines.get(gameNumber).iterator();
+            for (Mother2ScriptIndexEntry indexEntry : indexes.get(gameNumber)) {
+                GraphNode<String> gameLine = gameLinesIterator.next();
+                Integer pageNumber = pageNumbersByType.get(indexEntry.getType());
+                if (pageNumber != null) {
+                    pageIndexes.get(pageNumber).get(gameNumber).add(indexEntry);
+                    pageLines.get(pageNumber).get(gameNumber).add(gameLine);
+                }
+            }
+        }
+
+        for (int pageNumber = 0; pageNumber < pageFilenames.size(); ++pageNumber) {
+            renderLinesPage(pageFilenames.get(pageNumber), games, pageIndexes.get(pageNumber), pageLines.get(pageNumber));
         }
     }
 
+    private static Map<Mother2ScriptIndexEntry.IndexEntryType, String> getPageFilenamesByType() {
+        Map<Mother2ScriptIndexEntry.IndexEntryType, String> pageFilenamesByType =
+                new EnumMap<>(Mother2ScriptIndexEntry.IndexEntryType.class);
+        for (Map.Entry<String, Set<Mother2ScriptIndexEntry.IndexEntryType>> page : COMPARISON_PAGES.entrySet()) {
+            for (Mother2ScriptIndexEntry.IndexEntryType type : page.getValue()) {
+                pageFilenamesByType.put(type, page.getKey());
+            }
+        }
+        return pageFilenamesByType;
+    }
+
     private void copyStaticResources() throws ModuleException {
         try {
             FileUtils.copyDirectory(new File(STATIC_RESOURCES_PATH), new File(outputDirectory, "static"));
@@ -112,40 +162,168 @@ public class Mother2HtmlFileViewModule implements ViewModule<Mother2ScriptIndexE
         }
     }
 
-    private void renderComparisonPage(
-            String pageFilename,
-            List<Mother2Game> games,
-            Set<Mother2ScriptIndexEntry.IndexEntryType> types,
-            List<Mother2ScriptIndexEntry> index,
-            List<GraphComparison<String>> graphComparisons)
-            throws ModuleException {
-        List<Map<String, Object>> viewModelIndex = new ArrayList<>();
-
-        Iterator<Mother2ScriptIndexEntry> indexIterator = index.iterator();
-        Iterator<GraphComparison<String>> graphComparisonIterator = graphComparisons.iterator();
-        while (indexIterator.hasNext()) {
-            Mother2ScriptIndexEntry indexEntry = indexIterator.next();
-            GraphComparison<String> graphComparison = graphComparisonIterator.next();
-
-            if (!types.contains(indexEntry.getType())) {
-                continue;
+    /*
+    Every comparison page is rendered on its own thread while the comparisons are still being produced. Each thread's
+    template lists the entries straight from a bounded queue, so an entry's view model is written out and released
+    shortly after it's added, rather than all of them being held until the end. View models, with their line diffs,
+    are built on the page's thread too, so that work is spread across the pages instead of slowing down the producer.
+    */
+    private class HtmlComparisonSink implements ComparisonSink<Mother2ScriptIndexEntry> {
+        private final Map<Mother2ScriptIndexEntry.IndexEntryType, ComparisonPageRenderer> pageRenderersByType =
+                new EnumMap<>(Mother2ScriptIndexEntry.IndexEntryType.class);
+        private final List<ComparisonPageRenderer> pageRenderers = new ArrayList<>();
+        private final ExecutorService executorService = Executors.newFixedThreadPool(COMPARISON_PAGES.size());
+
+        private HtmlComparisonSink(List<Mother2Game> games) {
+            for (Map.Entry<String, Set<Mother2ScriptIndexEntry.IndexEntryType>> page : COMPARISON_PAGES.entrySet()) {
+                ComparisonPageRenderer pageRenderer = new ComparisonPageRenderer(page.getKey(), games);
+                pageRenderers.add(pageRenderer);
+                for (Mother2ScriptIndexEntry.IndexEntryType type : page.getValue()) {
+                    pageRenderersByType.put(type, pageRenderer);
+                }
+                pageRenderer.future = executorService.submit(pageRenderer);
             }
+        }
 
-            Map<String, Object> viewModelIndexEntry = new HashMap<>();
-            viewModelIndexEntry.put("type", indexEntry.getType().getName());
-            viewModelIndexEntry.put("id", indexEntry.getEntryId());
+        @Override
+        public void add(Mother2ScriptIndexEntry indexEntry, GraphComparison<String> graphComparison,
+                        Optional<Mother2ScriptIndexEntry> representative) throws ModuleException {
+            ComparisonPageRenderer pageRenderer = pageRenderersByType.get(indexEntry.getType());
+            if (pageRenderer == null) {
+                return;
+            }
 
-            addComparisonToViewModel(viewModelIndexEntry, graphComparison);
+            pageRenderer.put(new QueuedComparison(indexEntry, graphComparison, representative.orElse(null)));
+        }
 
-            viewModelIndex.add(viewModelIndexEntry);
+        @Override
+        public void finish() throws ModuleException {
+            try {
+                for (ComparisonPageRenderer pageRenderer : pageRenderers) {
+                    pageRenderer.put(END_OF_PAGE);
+                }
+                for (ComparisonPageRenderer pageRenderer : pageRenderers) {
+                    pageRenderer.future.get();
+                }
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof ModuleException) {
+                    throw (ModuleException) e.getCause();
+                }
+                throw new ModuleException("Could not render comparison page", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ModuleException("Interrupted while rendering comparison pages", e);
+            } finally {
+                executorService.shutdownNow();
+            }
         }
 
-        Map<String, Object> viewModel = new HashMap<>();
-        viewModel.put("lastUpdated", new Date());
-        viewModel.put("index", viewModelIndex);
-        viewModel.put("games", games);
+        @Override
+        public void abort() {
+            executorService.shutdownNow();
+        }
+    }
+
+    private class ComparisonPageRenderer implements Callable<Void> {
+        private final String pageFilename;
+        private final List<Mother2Game> games;
+        private final BlockingQueue<QueuedComparison> queue = new ArrayBlockingQueue<>(PAGE_QUEUE_DEPTH);
+        private Future<Void> future;
+
+        private ComparisonPageRenderer(String pageFilename, List<Mother2Game> games) {
+            this.pageFilename = pageFilename;
+            this.games = games;
+        }
+
+        private void put(QueuedComparison queuedComparison) throws ModuleException {
+            try {
+                queue.put(queuedComparison);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ModuleException("Interrupted while rendering " + pageFilename, e);
+            }
+        }
+
+        @Override
+        public Void call() throws ModuleException, InterruptedException {
+            ViewModelIterator viewModelIndex = new ViewModelIterator();
+
+            Map<String, Object> viewModel = new HashMap<>();
+            viewModel.put("lastUpdated", new Date());
+            viewModel.put("index", viewModelIndex);
+            viewModel.put("games", games);
+
+            try {
+                renderTemplate(indexTemplate, viewModel, outputDirectory + "/" + pageFilename);
+            } finally {
+                // Keep taking entries until the end, so that a failed page never blocks the producer
+                viewModelIndex.skipRemaining();
+            }
+            return null;
+        }
+
+        // Lists the queued comparisons for the template, building each one's view model once it's reached
+        private class ViewModelIterator implements Iterator<Map<String, Object>> {
+            private QueuedComparison next = null;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = queue.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        next = END_OF_PAGE;
+                    }
+                }
+                return next != END_OF_PAGE;
+            }
+
+            @Override
+            public Map<String, Object> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                QueuedComparison queuedComparison = next;
+                next = null;
+
+                Map<String, Object> viewModelIndexEntry = new HashMap<>();
+                viewModelIndexEntry.put("type", queuedComparison.getIndexEntry().getType().getName());
+                viewModelIndexEntry.put("id", queuedComparison.getIndexEntry().getEntryId());
+                viewModelIndexEntry.put("anchor", getAnchor(queuedComparison.getIndexEntry()));
+                addRepresentativeToViewModel(viewModelIndexEntry, queuedComparison.getRepresentative());
+                addComparisonToViewModel(viewModelIndexEntry, queuedComparison.getGraphComparison());
+                return viewModelIndexEntry;
+            }
 
-        renderTemplate(indexTemplate, viewModel, outputDirectory + "/" + pageFilename);
+            // Takes the rest of the entries without building their view models
+            private void skipRemaining() throws InterruptedException {
+                while (next != END_OF_PAGE) {
+                    next = queue.take();
+                }
+            }
+        }
+    }
+
+    private static String getAnchor(Mother2ScriptIndexEntry indexEntry) {
+        return indexEntry.getType().name().toLowerCase() + "-" + indexEntry.getEntryId();
+    }
+
+    // Links a grouped entry to its group's representative, which may be on another page
+    private static void addRepresentativeToViewModel(Map<String, Object> viewModel,
+                                                     Mother2ScriptIndexEntry representative) {
+        if (representative == null) {
+            return;
+        }
+        String pageFilename = PAGE_FILENAMES_BY_TYPE.get(representative.getType());
+        if (pageFilename == null) {
+            return;
+        }
+
+        viewModel.put("representative", ImmutableMap.of(
+                "type", representative.getType().getName(),
+                "id", representative.getEntryId(),
+                "href", pageFilename + "#" + getAnchor(representative)));
     }
 
     private void addComparisonToViewModel(
@@ -156,25 +334,38 @@ public class Mother2HtmlFileViewModule implements ViewModule<Mother2ScriptIndexE
         }
 
         viewModel.put("isIsomorphic", graphComparison.isIsomorphicComparison());
+        viewModel.put("isAligned", graphComparison.getAlignment().isPresent());
 
-        if (graphComparison.isIsomorphicComparison()) {
-            List<List<String>> lines = invert2dArrayAndRemoveFirstRow(graphComparison.getValues());
+        if (graphComparison.isIsomorphicComparison() || graphComparison.getAlignment().isPresent()) {
+            List<List<String>> lines;
+            if (graphComparison.isIsomorphicComparison()) {
+                lines = invert2dArrayAndRemoveFirstRow(graphComparison.getValues());
+            } else {
+                lines = getAlignedLines(graphComparison.getValues(), graphComparison.getAlignment().get());
+                viewModel.put("numLines", lines.size());
+                viewModel.put("numMatchedLines", lines.stream().filter(line -> !line.contains(null)).count());
+            }
 
             List<Map.Entry<List<String>, Set<Integer>>> sortedLinesTable = createSortedLinesTable(lines);
 
-            List<Map<String, Object>> sortedLinesChangedTable = sortedLinesTable.stream()
-                    .map(x -> ImmutableMap.of(
-                            "lineNumbers", x.getValue(),
-                            "lines", x.getKey(),
-                            "isLinesSame", lineMatchChecker.areLinesSame(x.getKey())))
-                    .collect(Collectors.toList());
+            List<Map<String, Object>> sortedLinesChangedTable = new ArrayList<>(sortedLinesTable.size());
+            for (Map.Entry<List<String>, Set<Integer>> x : sortedLinesTable) {
+                List<String> rowLines = x.getKey().stream()
+                        .map(line -> (line == null) ? "" : line)
+                        .collect(Collectors.toList());
+                boolean isLinesSame = lineMatchChecker.areLinesSame(x.getKey());
+                sortedLinesChangedTable.add(ImmutableMap.of(
+                        "lineNumbers", x.getValue(),
+                        "lines", rowLines,
+                        "segments", getLineSegments(rowLines, isLinesSame),
+                        "isLinesSame", isLinesSame));
+            }
 
             viewModel.put("linesTable", sortedLinesChangedTable);
         } else {
             List<List<String>> gamesLines = new ArrayList<>(graphComparison.getValues().size());
             for (List<String> gameLines : graphComparison.getValues()) {
-                gameLines.remove(0);
-                gamesLines.add(gameLines);
+                gamesLines.add(gameLines.subList(1, gameLines.size()));
             }
 
             List<List<Map.Entry<String, Set<Integer>>>> sortedGameLinesTables = new ArrayList<>();
@@ -211,9 +402,9 @@ public class Mother2HtmlFileViewModule implements ViewModule<Mother2ScriptIndexE
     }
 
     private void renderLinesPage(
-            String pageFilename, List<Mother2Game> games, Set<Mother2ScriptIndexEntry.IndexEntryType> types,
+            String pageFilename, List<Mother2Game> games,
             List<List<Mother2ScriptIndexEntry>> indexes, List<List<GraphNode<String>>> lines) throws ModuleException {
-        List<List<Map>> linesViewModel = getLinesViewModel(types, indexes, lines);
+        List<List<Map>> linesViewModel = getLinesViewModel(indexes, lines);
 
         Map<String, Object> viewModel = new HashMap<>();
         viewModel.put("games", games);
@@ -224,7 +415,6 @@ public class Mother2HtmlFileViewModule implements ViewModule<Mother2ScriptIndexE
     }
 
     private List<List<Map>> getLinesViewModel(
-            Set<Mother2ScriptIndexEntry.IndexEntryType> types,
             List<List<Mother2ScriptIndexEntry>> indexes, List<List<GraphNode<String>>> lines) {
         List<List<Map>> linesPageData = new ArrayList<>();
 
@@ -244,10 +434,6 @@ public class Mother2HtmlFileViewModule implements ViewModule<Mother2ScriptIndexE
                 Mother2ScriptIndexEntry indexEntry = indexIterator.next();
                 GraphNode<String> gameLine = gameLinesIterator.next();
 
-                if (!types.contains(indexEntry.getType())) {
-                    continue;
-                }
-
                 List<String> gameLineValues = GraphUtils.getAllValues(gameLine);
                 if (gameLineValues.isEmpty() || ((gameLineValues.size() == 1) && (gameLineValues.get(0) == null))) {
                     continue;
@@ -271,14 +457,62 @@ public class Mother2HtmlFileViewModule implements ViewModule<Mother2ScriptIndexE
             throw new ModuleException("Could not open file: " + filename, e);
         }
 
-        Writer out = new OutputStreamWriter(outputStream);
-        try {
+        try (Writer out = new OutputStreamWriter(outputStream)) {
             template.process(viewModel, out);
         } catch (IOException | TemplateException e) {
             throw new ModuleException("Could not write template", e);
         }
     }
 
+    /*
+    Splits every line of a row into changed and unchanged segments. Each line is diffed against the first game's, and
+    the first game's line against the second game's.
+    */
+    private List<List<Map<String, Object>>> getLineSegments(List<String> lines, boolean isLinesSame) {
+        boolean isDiffed = !isLinesSame && (lines.size() >= 2);
+        // The first two columns are both marked from the same diff
+        LineDiffer.LineDiff firstDiff = isDiffed ? lineDiffer.diff(lines.get(0), lines.get(1)) : null;
+
+        List<List<Map<String, Object>>> lineSegments = new ArrayList<>(lines.size());
+        for (int i = 0; i < lines.size(); ++i) {
+            List<LineDiffer.Segment> segments;
+            if (!isDiffed) {
+                segments = ImmutableList.of(new LineDiffer.Segment(lines.get(i), false));
+            } else if (i == 0) {
+                segments = firstDiff.getFirst();
+            } else if (i == 1) {
+                segments = firstDiff.getSecond();
+            } else {
+                segments = lineDiffer.diff(lines.get(0), lines.get(i)).getSecond();
+            }
+
+            lineSegments.add(segments.stream()
+                    .map(segment -> ImmutableMap.<String, Object>of(
+                            "text", segment.getText(),
+                            "isChanged", segment.isChanged()))
+                    .collect(Collectors.toList()));
+        }
+        return lineSegments;
+    }
+
+    // Rows are kept in alignment order, leaving out the ones with no text at all, like the graphs' roots
+    private <T> List<List<T>> getAlignedLines(List<List<T>> values, Alignment alignment) {
+        List<List<T>> lines = new ArrayList<>(alignment.getRows().size());
+        for (List<Integer> row : alignment.getRows()) {
+            List<T> line = new ArrayList<>(row.size());
+            boolean isBlank = true;
+            for (int i = 0; i < row.size(); ++i) {
+                T value = (row.get(i) == null) ? null : values.get(i).get(row.get(i));
+                line.add(value);
+                isBlank &= value == null;
+            }
+            if (!isBlank) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
     private <T> List<List<T>> invert2dArrayAndRemoveFirstRow(List<List<T>> list) {
         if (list.isEmpty()) {
             return list;
@@ -0,0 +1,184 @@
+package hawkeye.service.util;
+
+import hawkeye.graph.util.SequenceAligner;
+import lombok.Value;
+
+import java.util.*;
+
+/**
+ * Finds which parts of two lines changed. Lines are split into tokens (words, single CJK characters, bracketed
+ * control codes, whitespace and punctuation), and the tokens that are not part of a longest common subsequence of the
+ * two lines are marked as changed.
+ *
+ * Lines of up to {@link #BIT_PARALLEL_MAXIMUM_TOKENS} tokens are compared with Hyyrö's bit-parallel LCS, which handles
+ * a whole row of the LCS table in one or two machine words. Longer lines fall back to {@link SequenceAligner}, whose
+ * cost grows with the number of differences rather than the length of the lines.
+ */
+public class LineDiffer {
+    private static final int BIT_PARALLEL_MAXIMUM_TOKENS = 128;
+
+    @Value
+    public static class Segment {
+        private String text;
+        private boolean isChanged;
+    }
+
+    @Value
+    public static class LineDiff {
+        private List<Segment> first;
+        private List<Segment> second;
+    }
+
+    private final SequenceAligner sequenceAligner = new SequenceAligner();
+
+    public LineDiff diff(String first, String second) {
+        List<String> firstTokens = tokenize(first);
+        List<String> secondTokens = tokenize(second);
+        boolean[] isFirstMatched = new boolean[firstTokens.size()];
+        boolean[] isSecondMatched = new boolean[secondTokens.size()];
+        match(firstTokens, secondTokens, isFirstMatched, isSecondMatched);
+
+        return new LineDiff(toSegments(firstTokens, isFirstMatched), toSegments(secondTokens, isSecondMatched));
+    }
+
+    void match(List<String> firstTokens, List<String> secondTokens,
+               boolean[] isFirstMatched, boolean[] isSecondMatched) {
+        if (firstTokens.isEmpty() || secondTokens.isEmpty()) {
+            // Nothing can match
+        } else if (firstTokens.size() <= BIT_PARALLEL_MAXIMUM_TOKENS) {
+            matchBitParallel(firstTokens, secondTokens, isFirstMatched, isSecondMatched);
+        } else {
+            for (int[] pair : sequenceAligner.align(firstTokens, secondTokens)) {
+                if ((pair[0] != SequenceAligner.GAP) && (pair[1] != SequenceAligner.GAP)) {
+                    isFirstMatched[pair[0]] = true;
+                    isSecondMatched[pair[1]] = true;
+                }
+            }
+        }
+    }
+
+    static List<String> tokenize(String line) {
+        List<String> tokens = new ArrayList<>();
+        int start = 0;
+        while (start < line.length()) {
+            int codePoint = line.codePointAt(start);
+            int end = start + Character.charCount(codePoint);
+
+            if (codePoint == '[') {
+                int closingBracket = line.indexOf(']', end);
+                if (closingBracket != -1) {
+                    end = closingBracket + 1;
+                }
+            } else if (Character.isWhitespace(codePoint)) {
+                while ((end < line.length()) && Character.isWhitespace(line.codePointAt(end))) {
+                    end += Character.charCount(line.codePointAt(end));
+                }
+            } else if (isWordCharacter(codePoint)) {
+                while ((end < line.length()) && isWordCharacter(line.codePointAt(end))) {
+                    end += Character.charCount(line.codePointAt(end));
+                }
+            }
+
+            tokens.add(line.substring(start, end));
+            start = end;
+        }
+        return tokens;
+    }
+
+    // CJK text has no spaces between words, so every character of it is a token of its own
+    private static boolean isWordCharacter(int codePoint) {
+        if (!Character.isLetterOrDigit(codePoint)) {
+            return false;
+        }
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return (script != Character.UnicodeScript.HAN)
+                && (script != Character.UnicodeScript.HIRAGANA)
+                && (script != Character.UnicodeScript.KATAKANA);
+    }
+
+    /*
+    Bit i of row j is clear when the LCS of the first i + 1 tokens of the first line and the first j tokens of the
+    second line is longer than that of the first i tokens, so LCS lengths can be read off any row with a popcount. Every
+    row is kept, and the LCS is traced back through them.
+    */
+    private void matchBitParallel(List<String> firstTokens, List<String> secondTokens,
+                                  boolean[] isFirstMatched, boolean[] isSecondMatched) {
+        int numWords = (firstTokens.size() + 63) >>> 6;
+
+        Map<String, long[]> matchMasks = new HashMap<>();
+        for (int i = 0; i < firstTokens.size(); ++i) {
+            long[] matchMask = matchMasks.computeIfAbsent(firstTokens.get(i), token -> new long[numWords]);
+            matchMask[i >>> 6] |= 1L << (i & 63);
+        }
+        long[] noMatches = new long[numWords];
+
+        long[][] rows = new long[secondTokens.size() + 1][];
+        rows[0] = new long[numWords];
+        Arrays.fill(rows[0], -1L);
+        for (int j = 0; j < secondTokens.size(); ++j) {
+            long[] matchMask = matchMasks.getOrDefault(secondTokens.get(j), noMatches);
+            long[] previousRow = rows[j];
+            long[] row = new long[numWords];
+
+            long carry = 0;
+            for (int w = 0; w < numWords; ++w) {
+                long v = previousRow[w];
+                long u = v & matchMask[w];
+                long sum = v + u;
+                long nextCarry = (Long.compareUnsigned(sum, v) < 0) || ((carry != 0) && (sum == -1L)) ? 1 : 0;
+                row[w] = (sum + carry) | (v & ~matchMask[w]);
+                carry = nextCarry;
+            }
+            rows[j + 1] = row;
+        }
+
+        int i = firstTokens.size();
+        int j = secondTokens.size();
+        while ((i > 0) && (j > 0)) {
+            if (firstTokens.get(i - 1).equals(secondTokens.get(j - 1))
+                    && (getLcsLength(rows[j], i) == getLcsLength(rows[j - 1], i - 1) + 1)) {
+                isFirstMatched[--i] = true;
+                isSecondMatched[--j] = true;
+            } else if (getLcsLength(rows[j], i - 1) >= getLcsLength(rows[j - 1], i)) {
+                --i;
+            } else {
+                --j;
+            }
+        }
+    }
+
+    // The LCS of the first numTokens tokens of the first line with however much of the second line the row covers
+    private static int getLcsLength(long[] row, int numTokens) {
+        int numSetBits = 0;
+        int numFullWords = numTokens >>> 6;
+        for (int w = 0; w < numFullWords; ++w) {
+            numSetBits += Long.bitCount(row[w]);
+        }
+        int remainingBits = numTokens & 63;
+        if (remainingBits != 0) {
+            numSetBits += Long.bitCount(row[numFullWords] & ((1L << remainingBits) - 1));
+        }
+        return numTokens - numSetBits;
+    }
+
+    // Whitespace is never shown as changed, since lines are compared ignoring it
+    private static List<Segment> toSegments(List<String> tokens, boolean[] isMatched) {
+        List<Segment> segments = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        boolean isChanged = false;
+        for (int i = 0; i < tokens.size(); ++i) {
+            String token = tokens.get(i);
+            boolean isTokenChanged = !isMatched[i] && !Character.isWhitespace(token.codePointAt(0));
+            if ((isTokenChanged != isChanged) && (text.length() > 0)) {
+                segments.add(new Segment(text.toString(), isChanged));
+                text.setLength(0);
+            }
+            text.append(token);
+            isChanged = isTokenChanged;
+        }
+        if (text.length() > 0) {
+            segments.add(new Segment(text.toString(), isChanged));
+        }
+        return segments;
+    }
+}
@@ -1,15 +1,22 @@
 package hawkeye.service.util;
 
+import com.google.inject.Singleton;
 import hawkeye.graph.model.GraphComparison;
 
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
 
+/* A singleton so that the filters and the view share one cache of normalized lines */
+@Singleton
 public class LineMatchChecker {
+    private final NormalizedLineCache normalizedLineCache = new NormalizedLineCache();
+
     public boolean hasDifferences(GraphComparison<String> graphComparison) {
         if (!graphComparison.isIsomorphicComparison()) {
             return true;
+        } else if (graphComparison.isIdentical()) {
+            return false;
         }
 
         List<String> firstValue = graphComparison.getValues().get(0);
@@ -30,10 +37,7 @@ public class LineMatchChecker {
         Iterator<String> ai = a.iterator();
         Iterator<String> bi = b.iterator();
         while (ai.hasNext()) {
-            String as = removeWhitespace(ai.next());
-            String bs = removeWhitespace(bi.next());
-
-            if (!isEqualIgnoreWhitespace(as, bs)) {
+            if (!isEqualIgnoreWhitespace(ai.next(), bi.next())) {
                 return true;
             }
         }
@@ -59,16 +63,6 @@ public class LineMatchChecker {
             return false;
         }
 
-        String as = removeWhitespace(a);
-        String bs = removeWhitespace(b);
-
-        return as.equals(bs);
-    }
-
-    private String removeWhitespace(String s) {
-        if (s == null) {
-            return null;
-        }
-        return s.replace("　", "").replaceAll("\\s", "");
+        return normalizedLineCache.get(a).equals(normalizedLineCache.get(b));
     }
 }
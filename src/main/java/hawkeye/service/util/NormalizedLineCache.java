@@ -0,0 +1,89 @@
+package hawkeye.service.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import lombok.Value;
+
+/**
+ * Normalizes lines for comparison by removing their whitespace, including ideographic spaces. Each distinct line is
+ * only normalized once, and its normalized form is kept along with a 64-bit fingerprint, so most lines that differ
+ * can be told apart without comparing their text. The least recently used lines are evicted once the cache is full.
+ */
+public class NormalizedLineCache {
+    private static final HashFunction FINGERPRINT_HASH_FUNCTION = Hashing.murmur3_128();
+    private static final char IDEOGRAPHIC_SPACE = '\u3000';
+
+    @Value
+    public static class NormalizedLine {
+        // Declared first so that equals() compares fingerprints before text
+        private long fingerprint;
+        private String text;
+    }
+
+    public static final long DEFAULT_MAXIMUM_SIZE = 100000;
+
+    private final Cache<String, NormalizedLine> normalizedLines;
+
+    public NormalizedLineCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public NormalizedLineCache(long maximumSize) {
+        normalizedLines = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .build();
+    }
+
+    /** Returns the normalized form of a line, or null for a null line */
+    public NormalizedLine get(String line) {
+        if (line == null) {
+            return null;
+        }
+
+        NormalizedLine normalizedLine = normalizedLines.getIfPresent(line);
+        if (normalizedLine == null) {
+            String text = removeWhitespace(line);
+            normalizedLine = new NormalizedLine(FINGERPRINT_HASH_FUNCTION.hashString(text).asLong(), text);
+            normalizedLines.put(line, normalizedLine);
+        }
+        return normalizedLine;
+    }
+
+    public long size() {
+        return normalizedLines.size();
+    }
+
+    // Removes the same characters as the regex \s, plus ideographic spaces. Lines without any are returned as they are.
+    static String removeWhitespace(String line) {
+        StringBuilder normalized = null;
+        for (int i = 0; i < line.length(); ++i) {
+            char c = line.charAt(i);
+            if (isWhitespace(c)) {
+                if (normalized == null) {
+                    normalized = new StringBuilder(line.length() - 1);
+                    normalized.append(line, 0, i);
+                }
+            } else if (normalized != null) {
+                normalized.append(c);
+            }
+        }
+        return (normalized == null) ? line : normalized.toString();
+    }
+
+    private static boolean isWhitespace(char c) {
+        switch (c) {
+            case ' ':
+            case '\t':
+            case '\n':
+            case '\u000B':
+            case '\f':
+            case '\r':
+            case IDEOGRAPHIC_SPACE:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -4,10 +4,19 @@
     <#list index as indexEntry>
         <div class="row">
             <div class="col-md-12">
-                <h2>${indexEntry.type} #${indexEntry.id}</h2>
+                <h2 id="${indexEntry.anchor}">${indexEntry.type} #${indexEntry.id}</h2>
+                <#if indexEntry.representative??>
+                    <p class="understated">Nearly the same as <a href="${indexEntry.representative.href}">${indexEntry.representative.type} #${indexEntry.representative.id}</a></p>
+                </#if>
             </div>
 
-            <#if indexEntry.isIsomorphic>
+            <#if indexEntry.representative??>
+                <details class="near-duplicate"><summary>Show differences</summary>
+            </#if>
+            <#if indexEntry.isIsomorphic || indexEntry.isAligned>
+                <#if indexEntry.isAligned>
+                    <p class="understated">Structure differs: ${indexEntry.numMatchedLines} of ${indexEntry.numLines} lines line up</p>
+                </#if>
                 <table class="table-bordered table-striped">
                     <tr>
                         <#list games as game>
@@ -20,8 +29,8 @@
                         <#else>
                             <tr>
                         </#if>
-                            <#list linesTableEntry.lines as line>
-                                <td><pre>${line?html}</pre></td>
+                            <#list linesTableEntry.segments as lineSegments>
+                                <td><pre><#list lineSegments as segment><#if segment.isChanged><span class="changed">${segment.text?html}</span><#else>${segment.text?html}</#if></#list></pre></td>
                             </#list>
                         </tr>
                     </#list>
@@ -51,6 +60,9 @@
                     </tr>
                 </table>
             </#if>
+            <#if indexEntry.representative??>
+                </details>
+            </#if>
         </div>
     <#else>
         (No differences)
@@ -6,6 +6,7 @@ import hawkeye.config.model.ControlCode;
 import hawkeye.config.model.ROMType;
 import hawkeye.config.model.TextTable;
 import hawkeye.config.util.ControlCodeDeserializationFactory;
+import hawkeye.config.util.GsonSingleton;
 import hawkeye.config.util.ROMTypeDeserializationFactory;
 import hawkeye.config.util.TextTableFactory;
 import hawkeye.game.exceptions.UnrecognizedROMException;
@@ -23,17 +24,24 @@ import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import java.util.Collection;
+import java.util.Optional;
 
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
 public class Mother2GameFactoryTest {
     private static final String EARTHBOUND_MD5SUM = "eb checksum";
+    private static final long EARTHBOUND_SIZE = 0x300000L;
     private static final String EARTHBOUND_CHARACTER_TABLE_FILENAME = "eb-char-tbl-test.json";
     private static final String EARTHBOUND_CODELIST_FILENAME = "eb-codelist-test.json";
     private static final String MOTHER12_MD5SUM = "m12 checksum";
+    private static final long MOTHER12_SIZE = 0x1000000L;
     private static final String MOTHER12_CHARACTER_TABLE_FILENAME = "m12-char-tbl-test.json";
     private static final String MOTHER12_CODELIST_FILENAME = "m12-codelist-test.json";
 
@@ -64,6 +72,7 @@ public class Mother2GameFactoryTest {
                             "character table", EARTHBOUND_CHARACTER_TABLE_FILENAME,
                             "codelist", EARTHBOUND_CODELIST_FILENAME))
                     .offsets(ImmutableMap.of("npc table", 123, "door pointer table", 456))
+                    .size(EARTHBOUND_SIZE)
                     .build(),
             ROMType.builder()
                     .name("MOTHER 1+2")
@@ -75,6 +84,7 @@ public class Mother2GameFactoryTest {
                             "character table", MOTHER12_CHARACTER_TABLE_FILENAME,
                             "codelist", MOTHER12_CODELIST_FILENAME))
                     .offsets(ImmutableMap.of("npc table", 123, "door pointer table", 456))
+                    .size(MOTHER12_SIZE)
                     .build()
     );
 
@@ -89,8 +99,11 @@ public class Mother2GameFactoryTest {
                 romTypeDeserializationFactory, textTableFactory, controlCodeDeserializationFactory,
                 codeSyntaxTreeFactory, ebTextCompressionCodesReader, mother2GbaItemMap);
 
+        when(earthboundRom.size()).thenReturn(EARTHBOUND_SIZE);
         when(earthboundRom.getMd5sum()).thenReturn(EARTHBOUND_MD5SUM);
+        when(mother12Rom.size()).thenReturn(MOTHER12_SIZE);
         when(mother12Rom.getMd5sum()).thenReturn(MOTHER12_MD5SUM);
+        when(unknownRom.size()).thenReturn(EARTHBOUND_SIZE);
         when(unknownRom.getMd5sum()).thenReturn("unknown gfdsgfd");
     }
 
@@ -130,4 +143,49 @@ public class Mother2GameFactoryTest {
     public void testCreateFromRom_Unrecognized() throws Exception {
         mother2GameFactory.createFromRom(unknownRom);
     }
+
+    @Test
+    public void testCreateFromRom_KnownMd5sum() throws Exception {
+        when(textTableFactory.createFromFile(EARTHBOUND_CHARACTER_TABLE_FILENAME))
+                .thenReturn(textTable);
+        when(controlCodeDeserializationFactory.createCollectionFromFile(EARTHBOUND_CODELIST_FILENAME))
+                .thenReturn(controlCodes);
+        when(codeSyntaxTreeFactory.createTree(controlCodes, textTable))
+                .thenReturn(textSyntaxTreeNode);
+
+        Mother2Game game = mother2GameFactory.createFromRom(unknownRom, Optional.of(EARTHBOUND_MD5SUM));
+        assertTrue(game instanceof Mother2SnesGame);
+        verify(unknownRom, never()).getMd5sum();
+    }
+
+    @Test
+    public void testCreateFromRom_WrongSize() throws Exception {
+        when(earthboundRom.size()).thenReturn(0x200000L);
+
+        try {
+            mother2GameFactory.createFromRom(earthboundRom);
+            fail("Expected UnrecognizedROMException");
+        } catch (UnrecognizedROMException e) {
+            verify(earthboundRom, never()).getMd5sum();
+        }
+    }
+
+    @Test
+    public void testCreateFromRom_WrongSize_ConfiguredRomTypes() throws Exception {
+        ROMTypeDeserializationFactory configuredRomTypeFactory = new ROMTypeDeserializationFactory(new GsonSingleton());
+        for (ROMType romType : configuredRomTypeFactory.createCollectionFromFile("config/romtypes.json")) {
+            assertNotNull(romType.getShortName() + " " + romType.getPlatform() + " has no size", romType.getSize());
+        }
+        mother2GameFactory = new Mother2GameFactory(
+                configuredRomTypeFactory, textTableFactory, controlCodeDeserializationFactory,
+                codeSyntaxTreeFactory, ebTextCompressionCodesReader, mother2GbaItemMap);
+        when(unknownRom.size()).thenReturn(0x200000L);
+
+        try {
+            mother2GameFactory.createFromRom(unknownRom);
+            fail("Expected UnrecognizedROMException");
+        } catch (UnrecognizedROMException e) {
+            verify(unknownRom, never()).getMd5sum();
+        }
+    }
 }
@@ -0,0 +1,98 @@
+package hawkeye.graph.model;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class CompactGraphTest {
+    @Test
+    public void testOf_SingleNode() throws Exception {
+        CompactGraph<String> graph = CompactGraph.of(new GraphNode<>("A"));
+
+        assertEquals(1, graph.size());
+        assertEquals("A", graph.getValue(CompactGraph.ROOT));
+        assertEquals(0, graph.getNumVertices(CompactGraph.ROOT));
+    }
+
+    @Test
+    public void testOf_WalkOrder() throws Exception {
+        GraphNode<String> root = new GraphNode<>("A");
+        GraphNode<String> b = new GraphNode<>("B");
+        GraphNode<String> c = new GraphNode<>("C");
+        root.addVertex(b);
+        root.addVertex(c);
+        c.addVertex(root);
+
+        CompactGraph<String> graph = CompactGraph.of(root);
+
+        // The last vertex is walked first
+        assertEquals(ImmutableList.of("A", "C", "B"), graph.getValues());
+        assertEquals(2, graph.getNumVertices(0));
+        assertEquals(2, graph.getVertex(0, 0));
+        assertEquals(1, graph.getVertex(0, 1));
+        assertEquals(1, graph.getNumVertices(1));
+        assertEquals(0, graph.getVertex(1, 0));
+        assertEquals(0, graph.getNumVertices(2));
+    }
+
+    @Test
+    public void testOf_NullValues() throws Exception {
+        GraphNode<String> root = new GraphNode<>(null);
+        root.addVertex(new GraphNode<>("A"));
+
+        assertEquals(Arrays.asList(null, "A"), CompactGraph.of(root).getValues());
+    }
+
+    @Test
+    public void testToGraph() throws Exception {
+        GraphNode<String> root = new GraphNode<>("A");
+        root.addVertex(new GraphNode<>("B"));
+        root.addVertex(root);
+
+        GraphNode<String> graph = CompactGraph.of(root).toGraph();
+
+        assertEquals("A", graph.getValue());
+        assertEquals(2, graph.getVertices().size());
+        assertEquals("B", graph.getVertices().get(0).getValue());
+        assertSame(graph, graph.getVertices().get(1));
+    }
+
+    @Test
+    public void testBuilder_Renumbers() throws Exception {
+        CompactGraph.Builder<String> builder = CompactGraph.builder();
+        int a = builder.addNode("A");
+        int unreachable = builder.addNode("unreachable");
+        int b = builder.addNode("B");
+        builder.addVertex(unreachable, a);
+        builder.addVertex(a, b);
+        builder.addVertex(b, a);
+
+        CompactGraph<String> graph = builder.build();
+
+        assertEquals(ImmutableList.of("A", "B"), graph.getValues());
+        assertEquals(1, graph.getVertex(0, 0));
+        assertEquals(0, graph.getVertex(1, 0));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetVertex_OutOfBounds() throws Exception {
+        CompactGraph.of(new GraphNode<>("A")).getVertex(CompactGraph.ROOT, 0);
+    }
+
+    @Test
+    public void testHasSameStructure() throws Exception {
+        GraphNode<String> graph1 = new GraphNode<>("A");
+        graph1.addVertex(new GraphNode<>("B"));
+        GraphNode<String> graph2 = new GraphNode<>("C");
+        graph2.addVertex(new GraphNode<>("D"));
+        GraphNode<String> graph3 = new GraphNode<>("A");
+        graph3.addVertex(graph3);
+
+        assertTrue(CompactGraph.of(graph1).hasSameStructure(CompactGraph.of(graph2)));
+        assertFalse(CompactGraph.of(graph1).hasSameStructure(CompactGraph.of(graph3)));
+        assertNotEquals(CompactGraph.of(graph1).fingerprint(), CompactGraph.of(graph2).fingerprint());
+    }
+}
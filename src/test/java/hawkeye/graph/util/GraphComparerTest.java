@@ -1,6 +1,7 @@
 package hawkeye.graph.util;
 
 import com.google.common.collect.ImmutableList;
+import hawkeye.graph.model.Alignment;
 import hawkeye.graph.model.GraphComparison;
 import hawkeye.graph.model.GraphNode;
 import org.junit.Before;
@@ -146,4 +147,116 @@ public class GraphComparerTest {
         assertEquals(1, structure.getVertices().get(0).getVertices().size());
         assertEquals(structure, structure.getVertices().get(0).getVertices().get(0));
     }
+
+    @Test
+    public void testCompare_Identical() {
+        GraphNode<String> graph1 = new GraphNode<>("A");
+        graph1.addVertex(new GraphNode<>("B"));
+        graph1.getVertices().get(0).addVertex(graph1);
+        GraphNode<String> graph2 = new GraphNode<>("A");
+        graph2.addVertex(new GraphNode<>("B"));
+        graph2.getVertices().get(0).addVertex(graph2);
+
+        GraphComparison<String> result = graphComparer.compare(ImmutableList.of(graph1, graph2));
+        assertTrue(result.isIsomorphicComparison());
+        assertTrue(result.isIdentical());
+
+        GraphNode<Integer> structure = result.getStructure().get().getVertices().get(0);
+        assertEquals(0, structure.getValue().intValue());
+        assertEquals(1, structure.getVertices().size());
+        assertEquals(1, structure.getVertices().get(0).getValue().intValue());
+        assertEquals(structure, structure.getVertices().get(0).getVertices().get(0));
+
+        assertEquals(ImmutableList.of("A", "B"), result.getValues().get(0));
+        assertEquals(ImmutableList.of("A", "B"), result.getValues().get(1));
+    }
+
+    @Test
+    public void testCompare_Fingerprint() {
+        GraphNode<String> graph1 = new GraphNode<>("A");
+        GraphNode<String> graph2 = new GraphNode<>("B");
+        GraphNode<String> graph3 = new GraphNode<>("C");
+
+        GraphComparison<String> result1 = graphComparer.compare(ImmutableList.of(graph1, graph2));
+        GraphComparison<String> result2 = graphComparer.compare(ImmutableList.of(graph1, graph2));
+        GraphComparison<String> result3 = graphComparer.compare(ImmutableList.of(graph1, graph3));
+        assertFalse(result1.isIdentical());
+        assertEquals(result1.getFingerprint(), result2.getFingerprint());
+        assertNotEquals(result1.getFingerprint(), result3.getFingerprint());
+    }
+
+    @Test
+    public void testCompare_ThreeGraphs() {
+        GraphNode<String> graph1 = new GraphNode<>("A");
+        graph1.addVertex(new GraphNode<>("A1"));
+        GraphNode<String> graph2 = new GraphNode<>("B");
+        graph2.addVertex(new GraphNode<>("B1"));
+        GraphNode<String> graph3 = new GraphNode<>("C");
+        graph3.addVertex(new GraphNode<>("C1"));
+
+        GraphComparison<String> result = graphComparer.compare(ImmutableList.of(graph1, graph2, graph3));
+        assertTrue(result.isIsomorphicComparison());
+        assertFalse(result.isIdentical());
+        assertEquals(3, result.getValues().size());
+        assertEquals(ImmutableList.of("A", "A1"), result.getValues().get(0));
+        assertEquals(ImmutableList.of("B", "B1"), result.getValues().get(1));
+        assertEquals(ImmutableList.of("C", "C1"), result.getValues().get(2));
+    }
+
+    @Test
+    public void testCompare_ThreeGraphs_LastDiffers() {
+        GraphNode<String> graph1 = new GraphNode<>("A");
+        graph1.addVertex(new GraphNode<>("A1"));
+        GraphNode<String> graph2 = new GraphNode<>("B");
+        graph2.addVertex(new GraphNode<>("B1"));
+        GraphNode<String> graph3 = new GraphNode<>("C");
+
+        GraphComparison<String> result = graphComparer.compare(ImmutableList.of(graph1, graph2, graph3));
+        assertFalse(result.isIsomorphicComparison());
+        assertEquals(ImmutableList.of("C"), result.getValues().get(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCompare_NoGraphs() {
+        graphComparer.compare(ImmutableList.<GraphNode<String>>of());
+    }
+
+    @Test
+    public void testCompare_Nonisomorphic_Aligned() {
+        GraphNode<String> graph1 = new GraphNode<>("Question");
+        graph1.addVertex(new GraphNode<>("No"));
+        graph1.addVertex(new GraphNode<>("Yes"));
+        graph1.getVertices().get(1).addVertex(new GraphNode<>("Goodbye"));
+        GraphNode<String> graph2 = new GraphNode<>("Frage");
+        graph2.addVertex(new GraphNode<>("No"));
+        graph2.addVertex(new GraphNode<>("Yes"));
+        graph2.getVertices().get(1).addVertex(new GraphNode<>("Extra"));
+        graph2.getVertices().get(1).getVertices().get(0).addVertex(new GraphNode<>("Goodbye"));
+
+        GraphComparison<String> result = graphComparer.compare(ImmutableList.of(graph1, graph2));
+        assertFalse(result.isIsomorphicComparison());
+        Alignment alignment = result.getAlignment().get();
+
+        // The question and "Yes" line up by structure, "Goodbye" and "No" by value, and "Extra" has no partner
+        assertEquals(4, alignment.getNumMatchedRows());
+        assertEquals(5, alignment.getRows().size());
+        for (List<Integer> row : alignment.getRows()) {
+            String value1 = (row.get(0) == null) ? null : result.getValues().get(0).get(row.get(0));
+            String value2 = (row.get(1) == null) ? null : result.getValues().get(1).get(row.get(1));
+            if (value1 == null) {
+                assertEquals("Extra", value2);
+            } else if (!value1.equals("Question")) {
+                assertEquals(value1, value2);
+            } else {
+                assertEquals("Frage", value2);
+            }
+        }
+    }
+
+    @Test
+    public void testCompare_Isomorphic_NotAligned() {
+        GraphComparison<String> result = graphComparer.compare(
+                ImmutableList.of(new GraphNode<>("A"), new GraphNode<>("B")));
+        assertFalse(result.getAlignment().isPresent());
+    }
 }
@@ -7,6 +7,7 @@ import org.junit.Test;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 
 public class GraphUtilsTest {
     @Test
@@ -24,4 +25,85 @@ public class GraphUtilsTest {
         List<String> values = GraphUtils.getAllValues(graph);
         assertEquals(ImmutableList.of("A"), values);
     }
+
+    @Test
+    public void testGetAllValues_DistinctNodesWithSameValue() throws Exception {
+        GraphNode<String> shared = new GraphNode<>("B");
+        GraphNode<String> graph = new GraphNode<>("A");
+        graph.addVertex(shared);
+        graph.addVertex(new GraphNode<>("B"));
+        graph.addVertex(shared);
+
+        List<String> values = GraphUtils.getAllValues(graph);
+        assertEquals(ImmutableList.of("A", "B", "B"), values);
+    }
+
+    @Test
+    public void testFingerprint_SameGraph() throws Exception {
+        GraphNode<String> graph1 = new GraphNode<>("A");
+        graph1.addVertex(new GraphNode<>("B"));
+        graph1.addVertex(graph1);
+        GraphNode<String> graph2 = new GraphNode<>("A");
+        graph2.addVertex(new GraphNode<>("B"));
+        graph2.addVertex(graph2);
+
+        assertEquals(GraphUtils.fingerprint(graph1), GraphUtils.fingerprint(graph2));
+    }
+
+    @Test
+    public void testFingerprint_DifferentValue() throws Exception {
+        GraphNode<String> graph1 = new GraphNode<>("A");
+        graph1.addVertex(new GraphNode<>("B"));
+        GraphNode<String> graph2 = new GraphNode<>("A");
+        graph2.addVertex(new GraphNode<>("C"));
+
+        assertNotEquals(GraphUtils.fingerprint(graph1), GraphUtils.fingerprint(graph2));
+    }
+
+    @Test
+    public void testFingerprint_DifferentEdgeOrder() throws Exception {
+        GraphNode<String> graph1 = new GraphNode<>("A");
+        graph1.addVertex(new GraphNode<>("B"));
+        graph1.addVertex(new GraphNode<>("C"));
+        GraphNode<String> graph2 = new GraphNode<>("A");
+        graph2.addVertex(new GraphNode<>("C"));
+        graph2.addVertex(new GraphNode<>("B"));
+
+        assertNotEquals(GraphUtils.fingerprint(graph1), GraphUtils.fingerprint(graph2));
+    }
+
+    @Test
+    public void testFingerprint_DifferentLoop() throws Exception {
+        GraphNode<String> graph1 = new GraphNode<>("A");
+        graph1.addVertex(new GraphNode<>("B"));
+        graph1.getVertices().get(0).addVertex(graph1);
+        GraphNode<String> graph2 = new GraphNode<>("A");
+        graph2.addVertex(new GraphNode<>("B"));
+        graph2.getVertices().get(0).addVertex(graph2.getVertices().get(0));
+
+        assertNotEquals(GraphUtils.fingerprint(graph1), GraphUtils.fingerprint(graph2));
+    }
+
+    @Test
+    public void testFingerprint_SharedNodeIsNotDuplicated() throws Exception {
+        GraphNode<String> shared = new GraphNode<>("B");
+        GraphNode<String> graph1 = new GraphNode<>("A");
+        graph1.addVertex(shared);
+        graph1.addVertex(shared);
+        GraphNode<String> graph2 = new GraphNode<>("A");
+        graph2.addVertex(new GraphNode<>("B"));
+        graph2.addVertex(new GraphNode<>("B"));
+
+        assertNotEquals(GraphUtils.fingerprint(graph1), GraphUtils.fingerprint(graph2));
+    }
+
+    @Test
+    public void testFingerprint_ValueBoundaries() throws Exception {
+        GraphNode<String> graph1 = new GraphNode<>("AB");
+        graph1.addVertex(new GraphNode<>("C"));
+        GraphNode<String> graph2 = new GraphNode<>("A");
+        graph2.addVertex(new GraphNode<>("BC"));
+
+        assertNotEquals(GraphUtils.fingerprint(graph1), GraphUtils.fingerprint(graph2));
+    }
 }
@@ -0,0 +1,126 @@
+package hawkeye.graph.util;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SequenceAlignerTest {
+    private SequenceAligner sequenceAligner;
+
+    @Before
+    public void init() throws Exception {
+        sequenceAligner = new SequenceAligner();
+    }
+
+    private static List<String> toStrings(List<int[]> alignment) {
+        List<String> result = new ArrayList<>(alignment.size());
+        for (int[] pair : alignment) {
+            result.add(pair[0] + ":" + pair[1]);
+        }
+        return result;
+    }
+
+    private static int countMatches(List<int[]> alignment) {
+        int numMatches = 0;
+        for (int[] pair : alignment) {
+            if ((pair[0] != SequenceAligner.GAP) && (pair[1] != SequenceAligner.GAP)) {
+                ++numMatches;
+            }
+        }
+        return numMatches;
+    }
+
+    // Every index appears exactly once and in order, and paired elements are equal
+    private static <T> void assertValidAlignment(List<T> a, List<T> b, List<int[]> alignment) {
+        int nextA = 0;
+        int nextB = 0;
+        for (int[] pair : alignment) {
+            if (pair[0] != SequenceAligner.GAP) {
+                assertEquals(nextA++, pair[0]);
+            }
+            if (pair[1] != SequenceAligner.GAP) {
+                assertEquals(nextB++, pair[1]);
+            }
+            if ((pair[0] != SequenceAligner.GAP) && (pair[1] != SequenceAligner.GAP)) {
+                assertEquals(a.get(pair[0]), b.get(pair[1]));
+            }
+        }
+        assertEquals(a.size(), nextA);
+        assertEquals(b.size(), nextB);
+    }
+
+    @Test
+    public void testAlign_Equal() throws Exception {
+        List<int[]> alignment = sequenceAligner.align(ImmutableList.of("A", "B"), ImmutableList.of("A", "B"));
+        assertEquals(ImmutableList.of("0:0", "1:1"), toStrings(alignment));
+    }
+
+    @Test
+    public void testAlign_Insertion() throws Exception {
+        List<int[]> alignment = sequenceAligner.align(
+                ImmutableList.of("A", "B", "C"), ImmutableList.of("A", "X", "B", "C"));
+        assertEquals(ImmutableList.of("0:0", "-1:1", "1:2", "2:3"), toStrings(alignment));
+    }
+
+    @Test
+    public void testAlign_Replacement() throws Exception {
+        List<String> a = ImmutableList.of("A", "B", "C", "D", "E");
+        List<String> b = ImmutableList.of("A", "X", "C", "Y", "E");
+        List<int[]> alignment = sequenceAligner.align(a, b);
+        assertValidAlignment(a, b, alignment);
+        assertEquals(3, countMatches(alignment));
+    }
+
+    @Test
+    public void testAlign_NothingInCommon() throws Exception {
+        List<int[]> alignment = sequenceAligner.align(ImmutableList.of("A", "B"), ImmutableList.of("C"));
+        assertEquals(ImmutableList.of("0:-1", "1:-1", "-1:0"), toStrings(alignment));
+    }
+
+    @Test
+    public void testAlign_Empty() throws Exception {
+        assertTrue(sequenceAligner.align(ImmutableList.of(), ImmutableList.of()).isEmpty());
+        assertEquals(ImmutableList.of("-1:0"), toStrings(sequenceAligner.align(ImmutableList.of(), ImmutableList.of("A"))));
+    }
+
+    @Test
+    public void testAlign_Random() throws Exception {
+        Random random = new Random(1234);
+        for (int i = 0; i < 50; ++i) {
+            List<Integer> a = new ArrayList<>();
+            List<Integer> b = new ArrayList<>();
+            for (int j = random.nextInt(40); j > 0; --j) {
+                a.add(random.nextInt(5));
+            }
+            for (int j = random.nextInt(40); j > 0; --j) {
+                b.add(random.nextInt(5));
+            }
+            assertValidAlignment(a, b, sequenceAligner.align(a, b));
+        }
+    }
+
+    @Test
+    public void testAlign_TooManyDifferences_UsesUniqueAnchors() throws Exception {
+        // Far more differences than the diff is allowed to look through, with unique lines to anchor on
+        List<String> a = new ArrayList<>();
+        List<String> b = new ArrayList<>();
+        for (int i = 0; i < 3000; ++i) {
+            a.add("only in a " + i);
+            b.add("only in b " + i);
+            if (i % 100 == 0) {
+                a.add("anchor " + i);
+                b.add("anchor " + i);
+            }
+        }
+
+        List<int[]> alignment = sequenceAligner.align(a, b);
+        assertValidAlignment(a, b, alignment);
+        assertEquals(30, countMatches(alignment));
+    }
+}
@@ -0,0 +1,44 @@
+package hawkeye.parse.model;
+
+import org.junit.Test;
+
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.*;
+
+public class CallStackTest {
+    @Test
+    public void testPushPop() throws Exception {
+        CallStack stack = CallStack.EMPTY.push(1).push(2);
+
+        assertEquals(2, stack.size());
+        assertEquals(2, stack.peek());
+        assertEquals(1, stack.pop().peek());
+        assertTrue(stack.pop().pop().isEmpty());
+        assertSame(CallStack.EMPTY, stack.pop().pop());
+    }
+
+    @Test
+    public void testPush_IsInterned() throws Exception {
+        CallStack a = CallStack.EMPTY.push(0x10).push(0x20);
+        CallStack b = CallStack.EMPTY.push(0x10).push(0x20);
+
+        assertSame(a, b);
+        assertSame(a.pop(), b.pop());
+        assertEquals(a.hashCode(), b.hashCode());
+    }
+
+    @Test
+    public void testEquals_DifferentOrder() throws Exception {
+        CallStack a = CallStack.EMPTY.push(0x10).push(0x20);
+        CallStack b = CallStack.EMPTY.push(0x20).push(0x10);
+
+        assertNotEquals(a, b);
+        assertNotEquals(a, a.pop());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testPop_Empty() throws Exception {
+        CallStack.EMPTY.pop();
+    }
+}
@@ -0,0 +1,36 @@
+package hawkeye.parse.model;
+
+import com.google.common.collect.ImmutableList;
+import hawkeye.graph.model.GraphNode;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SubgraphCacheTest {
+    @Test
+    public void testGetPut() throws Exception {
+        SubgraphCache subgraphCache = new SubgraphCache();
+        GraphNode<ControlCodeUsage> subgraph = new GraphNode<>(null);
+
+        assertFalse(subgraphCache.get(new ParserState(0x10, CallStack.EMPTY)).isPresent());
+        subgraphCache.put(new ParserState(0x10, CallStack.EMPTY), subgraph, 2, ImmutableList.of());
+
+        SubgraphCache.Entry entry = subgraphCache.get(new ParserState(0x10, CallStack.EMPTY)).get();
+        assertSame(subgraph, entry.getSubgraph());
+        assertEquals(2, entry.getDepth());
+        assertFalse(subgraphCache.get(new ParserState(0x10, CallStack.EMPTY.push(0x20))).isPresent());
+
+        assertEquals(1, subgraphCache.getHitCount());
+        assertEquals(2, subgraphCache.getMissCount());
+    }
+
+    @Test
+    public void testMaximumSize() throws Exception {
+        SubgraphCache subgraphCache = new SubgraphCache(2);
+        for (int i = 0; i < 10; ++i) {
+            subgraphCache.put(new ParserState(i, CallStack.EMPTY), new GraphNode<>(null), 0, ImmutableList.of());
+        }
+
+        assertTrue(subgraphCache.size() <= 2);
+    }
+}
@@ -3,15 +3,16 @@ package hawkeye.parse.util;
 import com.google.common.collect.ImmutableList;
 import hawkeye.config.model.ControlCode;
 import hawkeye.config.model.TextTable;
+import hawkeye.parse.model.CompiledSyntaxTree;
 import hawkeye.parse.model.TextSyntaxTreeNode;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.Collections;
 import java.util.Optional;
+import java.util.Stack;
 
-import static org.junit.Assert.assertFalse;
-import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.*;
 
 public class CodeSyntaxTreeFactoryTest {
     private static final ControlCode CC_01 = ControlCode.builder()
@@ -104,4 +105,45 @@ public class CodeSyntaxTreeFactoryTest {
         Assert.assertEquals(CC_01_02, root.getChild(1).get().getChild(2).get().getControlCode().get());
         assertFalse(root.getChild(1).get().getChild(2).get().hasChildren());
     }
+
+    @Test
+    public void testCompile_Empty() throws Exception {
+        CompiledSyntaxTree compiled = factory.compile(factory.createTree(Collections.emptyList(), EMPTY_TEXT_TABLE));
+        assertEquals(1, compiled.getNumStates());
+        assertFalse(compiled.hasChildren(CompiledSyntaxTree.ROOT_STATE));
+        assertNull(compiled.getControlCode(CompiledSyntaxTree.ROOT_STATE));
+        for (int i = 0; i < CompiledSyntaxTree.ALPHABET_SIZE; ++i) {
+            assertEquals(CompiledSyntaxTree.NO_STATE, compiled.getTransition(CompiledSyntaxTree.ROOT_STATE, i));
+        }
+    }
+
+    @Test
+    public void testCompile_MatchesTree() throws Exception {
+        TextSyntaxTreeNode root = factory.createTree(ImmutableList.of(CC_01, CC_01_02, CC_1F_01, CC_1F_02), EMPTY_TEXT_TABLE);
+        CompiledSyntaxTree compiled = factory.compile(root);
+        assertEquals(6, compiled.getNumStates());
+
+        // Walk both representations in lockstep and check that every state agrees with its tree node
+        Stack<TextSyntaxTreeNode> nodes = new Stack<>();
+        Stack<Integer> states = new Stack<>();
+        nodes.push(root);
+        states.push(CompiledSyntaxTree.ROOT_STATE);
+        while (!nodes.isEmpty()) {
+            TextSyntaxTreeNode node = nodes.pop();
+            int state = states.pop();
+
+            assertEquals(node.hasChildren(), compiled.hasChildren(state));
+            assertEquals(node.getControlCode().orElse(null), compiled.getControlCode(state));
+
+            for (int i = 0; i < CompiledSyntaxTree.ALPHABET_SIZE; ++i) {
+                Optional<TextSyntaxTreeNode> child = node.getChild(i);
+                int nextState = compiled.getTransition(state, i);
+                assertEquals(child.isPresent(), nextState != CompiledSyntaxTree.NO_STATE);
+                if (child.isPresent()) {
+                    nodes.push(child.get());
+                    states.push(nextState);
+                }
+            }
+        }
+    }
 }
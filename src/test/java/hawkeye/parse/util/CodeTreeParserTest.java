@@ -8,13 +8,21 @@ import hawkeye.config.util.ControlCodeDeserializationFactory;
 import hawkeye.config.util.GsonSingleton;
 import hawkeye.config.util.TextTableFactory;
 import hawkeye.game.model.Game;
+import hawkeye.graph.model.CompactGraph;
 import hawkeye.graph.model.GraphNode;
 import hawkeye.parse.exceptions.InvalidTextException;
+import hawkeye.parse.model.BasicBlock;
+import hawkeye.parse.model.CallStack;
+import hawkeye.parse.model.CancellationToken;
 import hawkeye.parse.model.ControlCodeUsage;
+import hawkeye.parse.model.ParseBudget;
+import hawkeye.parse.model.ParserState;
 import hawkeye.parse.model.TextSyntaxTreeNode;
+import hawkeye.parse.model.TruncationReason;
 import hawkeye.rom.exceptions.ROMAccessException;
 import hawkeye.rom.util.ArrayROM;
 import hawkeye.rom.util.ROM;
+import hawkeye.rom.util.ROMSlice;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -43,6 +51,26 @@ public class CodeTreeParserTest {
             return rom.readArray(offset, length);
         }
 
+        @Override
+        public ROMSlice readSlice(long offset, int length) throws ROMAccessException {
+            return rom.readSlice(offset, length);
+        }
+
+        @Override
+        public int peek(long offset) throws ROMAccessException {
+            return rom.peek(offset);
+        }
+
+        @Override
+        public ROMSlice peekSlice(long offset, int length) throws ROMAccessException {
+            return rom.peekSlice(offset, length);
+        }
+
+        @Override
+        public void markRead(long offset, int length) {
+            rom.getCoverage().markRange(offset, length);
+        }
+
         @Override
         public Optional<Long> readPointer(long offset) throws ROMAccessException {
             long pointer = rom.readMultiLittleEndian(offset, 3);
@@ -82,11 +110,11 @@ public class CodeTreeParserTest {
         CodeSyntaxTreeFactory codeSyntaxTreeFactory = new CodeSyntaxTreeFactory();
         Collection<ControlCode> controlCodes = new ControlCodeDeserializationFactory(gson).createCollectionFromFile(TEST_CONTROLCODES_FILENAME);
         TextSyntaxTreeNode syntaxTree = codeSyntaxTreeFactory.createTree(controlCodes, textTable);
-        codeTreeParser = new CodeTreeParser(syntaxTree);
+        codeTreeParser = new CodeTreeParser(codeSyntaxTreeFactory.compile(syntaxTree));
 
         controlCodes = new ControlCodeDeserializationFactory(gson).createCollectionFromFile(TEST_CONTROLCODES2_FILENAME);
         syntaxTree = codeSyntaxTreeFactory.createTree(controlCodes, textTable);
-        codeTreeParser2 = new CodeTreeParser(syntaxTree);
+        codeTreeParser2 = new CodeTreeParser(codeSyntaxTreeFactory.compile(syntaxTree));
     }
 
     @Test
@@ -471,6 +499,25 @@ public class CodeTreeParserTest {
         assertEquals(0, graph.getValue().getParameters().length);
     }
 
+    @Test
+    public void testParseToGraph_Circular_Goto_CompactGraph() throws Exception {
+        Game game = new TestGame(TEST_ROMTYPE, new ArrayROM(new int[]{0, 14, 1, 0, 0, 0, 255}));
+        CompactGraph<ControlCodeUsage> graph = CompactGraph.of(codeTreeParser.parseToGraph(game, 0));
+
+        assertEquals(3, graph.size());
+        assertEquals(ImmutableList.of(0), graph.getValue(CompactGraph.ROOT).getControlCode().getIdentifier());
+        assertEquals(1, graph.getNumVertices(CompactGraph.ROOT));
+
+        int node = graph.getVertex(CompactGraph.ROOT, 0);
+        assertEquals(ImmutableList.of(14), graph.getValue(node).getControlCode().getIdentifier());
+        assertEquals(2, graph.getNumVertices(node));
+        assertEquals(node, graph.getVertex(node, 0));
+
+        node = graph.getVertex(node, 1);
+        assertEquals(0, graph.getNumVertices(node));
+        assertEquals(ImmutableList.of(255), graph.getValue(node).getControlCode().getIdentifier());
+    }
+
     @Test
     public void testParseToGraph_Circular_Call() throws Exception {
         Game game = new TestGame(TEST_ROMTYPE, new ArrayROM(new int[]{0, 16, 1, 0, 0, 0, 255}));
@@ -578,6 +625,260 @@ public class CodeTreeParserTest {
         assertEquals(0, subgraph.getVertices().size());
     }
 
+    @Test
+    public void testParseToGraph_DeeplyNestedReferences() throws Exception {
+        // Each unconditional goto jumps to the next one, so every reference nests one level deeper than the last
+        final int NUM_GOTOS = 20000;
+        int[] data = new int[NUM_GOTOS * 5 + 1];
+        for (int i = 0; i < NUM_GOTOS; ++i) {
+            int target = (i + 1) * 5;
+            data[i * 5] = 15;
+            data[i * 5 + 1] = target & 0xff;
+            data[i * 5 + 2] = (target >> 8) & 0xff;
+            data[i * 5 + 3] = (target >> 16) & 0xff;
+        }
+        data[NUM_GOTOS * 5] = 255;
+        Game game = new TestGame(TEST_ROMTYPE, new ArrayROM(data));
+
+        GraphNode<ControlCodeUsage> graph =
+                codeTreeParser.parseToGraph(game, 0, CodeTreeParser.UNLIMITED_RECURSION_DEPTH);
+
+        for (int i = 0; i < NUM_GOTOS; ++i) {
+            assertEquals(ImmutableList.of(15),
+                    graph.getValue().getControlCode().getIdentifier());
+            assertEquals(1, graph.getVertices().size());
+            graph = graph.getVertices().get(0);
+        }
+        assertEquals(ImmutableList.of(255),
+                graph.getValue().getControlCode().getIdentifier());
+        assertEquals(0, graph.getVertices().size());
+    }
+
+    @Test
+    public void testParseToGraph_SharedSubgraph() throws Exception {
+        // Two scripts that both jump to the same subscript at offset 10
+        Game game = new TestGame(TEST_ROMTYPE, new ArrayROM(new int[]{15, 10, 0, 0, 0, 15, 10, 0, 0, 0, 1, 255}));
+        GraphNode<ControlCodeUsage> graph1 = codeTreeParser.parseToGraph(game, 0);
+        long hitCount = game.getSubgraphCache().getHitCount();
+        GraphNode<ControlCodeUsage> graph2 = codeTreeParser.parseToGraph(game, 5);
+
+        assertNotSame(graph1, graph2);
+        assertSame(graph1.getVertices().get(0), graph2.getVertices().get(0));
+        assertEquals(hitCount + 1, game.getSubgraphCache().getHitCount());
+    }
+
+    @Test
+    public void testParseToGraph_SharedSubgraph_TooDeep() throws Exception {
+        Game game = new TestGame(TEST_ROMTYPE, new ArrayROM(new int[]{15, 7, 0, 0, 0, 2, 255, 1, 255}));
+        GraphNode<ControlCodeUsage> graph = codeTreeParser.parseToGraph(game, 0);
+        GraphNode<ControlCodeUsage> singleLineGraph = codeTreeParser.parseToGraph(game, 0, 0);
+
+        assertNotSame(graph, singleLineGraph);
+        assertEquals(ImmutableList.of(1),
+                graph.getVertices().get(0).getValue().getControlCode().getIdentifier());
+        assertEquals(Optional.of(TruncationReason.MAXIMUM_RECURSION_DEPTH),
+                TruncationReason.of(singleLineGraph.getVertices().get(0).getValue().getControlCode()));
+
+        // The full parse can still be reused by later full parses
+        assertSame(graph, codeTreeParser.parseToGraph(game, 0));
+    }
+
+    @Test
+    public void testParseToGraph_SharedSubgraph_SameAsFresh() throws Exception {
+        // The script at offset 5 jumps into the subscript at offset 15, and later into the middle of it at offset 16
+        int[] bytes = {15, 15, 0, 0, 0, 14, 15, 0, 0, 0, 15, 16, 0, 0, 0, 10, 10, 255};
+        Game freshGame = new TestGame(TEST_ROMTYPE, new ArrayROM(bytes));
+        CompactGraph<ControlCodeUsage> fresh = CompactGraph.of(codeTreeParser.parseToGraph(freshGame, 5));
+
+        Game warmGame = new TestGame(TEST_ROMTYPE, new ArrayROM(bytes));
+        codeTreeParser.parseToGraph(warmGame, 0);
+        long hitCount = warmGame.getSubgraphCache().getHitCount();
+        CompactGraph<ControlCodeUsage> warm = CompactGraph.of(codeTreeParser.parseToGraph(warmGame, 5));
+
+        assertEquals(hitCount + 1, warmGame.getSubgraphCache().getHitCount());
+        assertTrue(fresh.hasSameStructure(warm));
+        assertEquals(fresh.fingerprint(), warm.fingerprint());
+    }
+
+    @Test
+    public void testParseToGraph_SharedSubgraph_NodeBudget() throws Exception {
+        // The cached subscript at offset 10 would use up the budget, so it has to be truncated the same way
+        int[] bytes = {15, 10, 0, 0, 0, 1, 15, 10, 0, 0, 1, 2, 255};
+        ParseBudget parseBudget = ParseBudget.builder()
+                .maximumNodes(3)
+                .maximumNanos(ParseBudget.UNLIMITED)
+                .cancellationToken(new CancellationToken())
+                .build();
+        Game freshGame = new TestGame(TEST_ROMTYPE, new ArrayROM(bytes));
+        CompactGraph<ControlCodeUsage> fresh = CompactGraph.of(codeTreeParser.parseToGraph(freshGame, 5, parseBudget));
+
+        Game warmGame = new TestGame(TEST_ROMTYPE, new ArrayROM(bytes));
+        codeTreeParser.parseToGraph(warmGame, 0);
+        CompactGraph<ControlCodeUsage> warm = CompactGraph.of(codeTreeParser.parseToGraph(warmGame, 5, parseBudget));
+
+        assertTrue(fresh.hasSameStructure(warm));
+        assertEquals(fresh.fingerprint(), warm.fingerprint());
+    }
+
+    @Test
+    public void testParseToGraph_TruncatedSubgraphsAreNotShared() throws Exception {
+        Game game = new TestGame(TEST_ROMTYPE, new ArrayROM(new int[]{0, 16, 1, 0, 0, 0, 255}));
+        codeTreeParser.parseToGraph(game, 0);
+
+        assertFalse(game.getSubgraphCache().get(new ParserState(0, CallStack.EMPTY)).isPresent());
+        assertFalse(game.getSubgraphCache().get(new ParserState(1, CallStack.EMPTY)).isPresent());
+    }
+
+    @Test
+    public void testParseToGraph_BasicBlocks() throws Exception {
+        // Same layout as testParseToGraph_Reused_Offset_With_Different_Call_Stack
+        Game game = new TestGame(TEST_ROMTYPE, new ArrayROM(new int[]{
+                14, 12, 0, 0, 0, 17, 19, 0, 0, 0, 1, 255,
+                17, 19, 0, 0, 0, 2, 255,
+                3, 255
+        }));
+        GraphNode<ControlCodeUsage> graph = codeTreeParser.parseToGraph(game, 0);
+
+        BasicBlock basicBlock = game.getBasicBlockCache().get(19).get();
+        assertEquals(2, basicBlock.size());
+        assertEquals(ImmutableList.of(3),
+                basicBlock.get(0).getControlCodeUsage().getControlCode().getIdentifier());
+        assertEquals(20, basicBlock.get(1).getOffset());
+
+        // The block at offset 19 is reached under two call stacks but only decoded once
+        GraphNode<ControlCodeUsage> subgraph1 = graph.getVertices().get(0).getVertices().get(0);
+        GraphNode<ControlCodeUsage> subgraph2 = graph.getVertices().get(1).getVertices().get(0);
+        assertNotSame(subgraph1, subgraph2);
+        assertSame(subgraph1.getValue(), subgraph2.getValue());
+        assertSame(basicBlock.get(0).getControlCodeUsage(), subgraph1.getValue());
+
+        // Blocks end at the first reference
+        assertEquals(1, game.getBasicBlockCache().get(0).get().size());
+        assertEquals(1, game.getBasicBlockCache().get(5).get().size());
+        assertEquals(2, game.getBasicBlockCache().get(10).get().size());
+    }
+
+    @Test(expected = InvalidTextException.class)
+    public void testParseToGraph_BasicBlocks_UnknownCodeInBlock() throws Exception {
+        Game game = new TestGame(TEST_ROMTYPE, new ArrayROM(new int[] { 1, 2, 254 }));
+        codeTreeParser.parseToGraph(game, 0);
+    }
+
+    @Test
+    public void testParseToGraph_NodeBudget() throws Exception {
+        Game game = new TestGame(TEST_ROMTYPE, new ArrayROM(new int[] {0, 1, 2, 3, 255}));
+        ParseBudget parseBudget = ParseBudget.builder()
+                .maximumNodes(2)
+                .maximumNanos(ParseBudget.UNLIMITED)
+                .cancellationToken(new CancellationToken())
+                .build();
+        GraphNode<ControlCodeUsage> graph = codeTreeParser.parseToGraph(game, 0, parseBudget);
+
+        assertEquals(ImmutableList.of(0),
+                graph.getValue().getControlCode().getIdentifier());
+        graph = graph.getVertices().get(0);
+        assertEquals(ImmutableList.of(1),
+                graph.getValue().getControlCode().getIdentifier());
+        graph = graph.getVertices().get(0);
+        assertEquals(Optional.of(TruncationReason.MAXIMUM_NODES),
+                TruncationReason.of(graph.getValue().getControlCode()));
+        assertEquals(0, graph.getVertices().size());
+    }
+
+    @Test
+    public void testParseToGraph_NodeBudget_Coverage() throws Exception {
+        // The whole block is decoded at once, but only the nodes the budget allowed should count as read
+        ROM rom = new ArrayROM(new int[] {0, 1, 2, 3, 255});
+        Game game = new TestGame(TEST_ROMTYPE, rom);
+        ParseBudget parseBudget = ParseBudget.builder()
+                .maximumNodes(2)
+                .maximumNanos(ParseBudget.UNLIMITED)
+                .cancellationToken(new CancellationToken())
+                .build();
+        codeTreeParser.parseToGraph(game, 0, parseBudget);
+
+        assertTrue(rom.hasBeenRead(0));
+        assertTrue(rom.hasBeenRead(1));
+        assertFalse(rom.hasBeenRead(2));
+        assertFalse(rom.hasBeenRead(3));
+        assertFalse(rom.hasBeenRead(4));
+
+        codeTreeParser.parseToGraph(game, 0);
+
+        assertTrue(rom.hasBeenRead(2));
+        assertTrue(rom.hasBeenRead(3));
+        assertTrue(rom.hasBeenRead(4));
+    }
+
+    @Test
+    public void testParseToGraph_NodeBudget_ClosesPendingReferences() throws Exception {
+        // Conditional goto whose target is never reached because the budget runs out on the first node
+        Game game = new TestGame(TEST_ROMTYPE, new ArrayROM(new int[]{14, 7, 0, 0, 0, 2, 255, 1, 255}));
+        ParseBudget parseBudget = ParseBudget.builder()
+                .maximumNodes(1)
+                .maximumNanos(ParseBudget.UNLIMITED)
+                .cancellationToken(new CancellationToken())
+                .build();
+        GraphNode<ControlCodeUsage> graph = codeTreeParser.parseToGraph(game, 0, parseBudget);
+
+        assertEquals(ImmutableList.of(14),
+                graph.getValue().getControlCode().getIdentifier());
+        assertEquals(2, graph.getVertices().size());
+        for (GraphNode<ControlCodeUsage> subgraph : graph.getVertices()) {
+            assertEquals(Optional.of(TruncationReason.MAXIMUM_NODES),
+                    TruncationReason.of(subgraph.getValue().getControlCode()));
+        }
+    }
+
+    @Test
+    public void testParseToGraph_TimeBudget() throws Exception {
+        Game game = new TestGame(TEST_ROMTYPE, new ArrayROM(new int[] {0, 255}));
+        ParseBudget parseBudget = ParseBudget.builder()
+                .maximumNodes(ParseBudget.UNLIMITED)
+                .maximumNanos(0)
+                .cancellationToken(new CancellationToken())
+                .build();
+        GraphNode<ControlCodeUsage> graph = codeTreeParser.parseToGraph(game, 0, parseBudget);
+
+        assertEquals(Optional.of(TruncationReason.MAXIMUM_TIME),
+                TruncationReason.of(graph.getValue().getControlCode()));
+        assertEquals(0, graph.getVertices().size());
+    }
+
+    @Test
+    public void testParseToGraph_Cancelled() throws Exception {
+        Game game = new TestGame(TEST_ROMTYPE, new ArrayROM(new int[] {0, 255}));
+        CancellationToken cancellationToken = new CancellationToken();
+        cancellationToken.cancel();
+        ParseBudget parseBudget = ParseBudget.builder()
+                .maximumNodes(ParseBudget.UNLIMITED)
+                .maximumNanos(ParseBudget.UNLIMITED)
+                .cancellationToken(cancellationToken)
+                .build();
+        GraphNode<ControlCodeUsage> graph = codeTreeParser.parseToGraph(game, 0, parseBudget);
+
+        assertEquals(Optional.of(TruncationReason.CANCELLED),
+                TruncationReason.of(graph.getValue().getControlCode()));
+        assertEquals(0, graph.getVertices().size());
+    }
+
+    @Test
+    public void testParseToGraph_Cancelled_OtherParsesUnaffected() throws Exception {
+        Game game = new TestGame(TEST_ROMTYPE, new ArrayROM(new int[] {0, 255}));
+        ParseBudget parseBudget = ParseBudget.createDefault();
+        parseBudget.getCancellationToken().cancel();
+        GraphNode<ControlCodeUsage> graph = codeTreeParser.parseToGraph(game, 0, parseBudget);
+
+        assertEquals(Optional.of(TruncationReason.CANCELLED),
+                TruncationReason.of(graph.getValue().getControlCode()));
+
+        graph = codeTreeParser.parseToGraph(game, 0);
+
+        assertEquals(ImmutableList.of(0), graph.getValue().getControlCode().getIdentifier());
+        assertEquals(ImmutableList.of(255),
+                graph.getVertices().get(0).getValue().getControlCode().getIdentifier());
+    }
+
     @Test(expected = InvalidTextException.class)
     public void testParseToGraph_UnknownCode() throws Exception {
         Game game = new TestGame(TEST_ROMTYPE, new ArrayROM(new int[] { 254 }));
@@ -0,0 +1,111 @@
+package hawkeye.rom.util;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ROMCoverageTest {
+    private ROMCoverage coverage;
+
+    @Before
+    public void init() {
+        coverage = new ROMCoverage(200);
+    }
+
+    @Test
+    public void testMark() throws Exception {
+        assertFalse(coverage.isRead(0));
+        assertFalse(coverage.isRead(64));
+
+        coverage.mark(64);
+
+        assertFalse(coverage.isRead(0));
+        assertFalse(coverage.isRead(63));
+        assertTrue(coverage.isRead(64));
+        assertFalse(coverage.isRead(65));
+    }
+
+    @Test
+    public void testMark_Range() throws Exception {
+        coverage.markRange(60, 10);
+
+        assertFalse(coverage.isRead(59));
+        for (int i = 60; i < 70; ++i) {
+            assertTrue(coverage.isRead(i));
+        }
+        assertFalse(coverage.isRead(70));
+    }
+
+    @Test
+    public void testMarkRange_AcrossWords() throws Exception {
+        coverage.markRange(10, 150);
+
+        assertFalse(coverage.isRead(9));
+        for (int i = 10; i < 160; ++i) {
+            assertTrue(coverage.isRead(i));
+        }
+        assertFalse(coverage.isRead(160));
+    }
+
+    @Test
+    public void testNextUnread() throws Exception {
+        coverage.markRange(0, 130);
+
+        assertEquals(130, coverage.nextUnread(0));
+        assertEquals(130, coverage.nextUnread(130));
+        assertEquals(131, coverage.nextUnread(131));
+
+        coverage.markRange(130, 70);
+        assertEquals(-1, coverage.nextUnread(0));
+    }
+
+    @Test
+    public void testUnreadRuns() throws Exception {
+        coverage.markRange(5, 10);
+        coverage.markRange(70, 60);
+
+        assertEquals(
+                ImmutableList.of(
+                        new ROMCoverage.Run(0, 5),
+                        new ROMCoverage.Run(15, 70),
+                        new ROMCoverage.Run(130, 150)),
+                coverage.unreadRuns(0, 150));
+        assertEquals(
+                ImmutableList.of(new ROMCoverage.Run(20, 70)),
+                coverage.unreadRuns(20, 100));
+        assertEquals(
+                ImmutableList.of(new ROMCoverage.Run(130, 200)),
+                coverage.unreadRuns(72, 1000));
+    }
+
+    @Test
+    public void testMark_ConcurrentWriters() throws Exception {
+        ROMCoverage largeCoverage = new ROMCoverage(1 << 16);
+        int numThreads = 8;
+
+        List<Thread> threads = new ArrayList<>(numThreads);
+        for (int t = 0; t < numThreads; ++t) {
+            final int start = t;
+            threads.add(new Thread(() -> {
+                for (int i = start; i < largeCoverage.size(); i += numThreads) {
+                    largeCoverage.mark(i);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (int i = 0; i < largeCoverage.size(); ++i) {
+            assertTrue(largeCoverage.isRead(i));
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package hawkeye.rom.util;
+
+import hawkeye.config.util.GsonSingleton;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class ROMFingerprintCacheTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File cacheFile;
+    private File romFile;
+
+    @Before
+    public void init() throws Exception {
+        cacheFile = new File(temporaryFolder.getRoot(), "cache/fingerprints.json");
+        romFile = temporaryFolder.newFile("rom.bin");
+        FileUtils.writeByteArrayToFile(romFile, new byte[] {1, 2, 3});
+    }
+
+    @Test
+    public void testPutMd5sum_Persisted() throws Exception {
+        ROMFingerprintCache romFingerprintCache = new ROMFingerprintCache(new GsonSingleton(), cacheFile);
+        assertFalse(romFingerprintCache.getMd5sum(romFile).isPresent());
+        romFingerprintCache.putMd5sum(romFile, "abc123");
+
+        assertTrue(cacheFile.isFile());
+        ROMFingerprintCache reloadedCache = new ROMFingerprintCache(new GsonSingleton(), cacheFile);
+        assertEquals(Optional.of("abc123"), reloadedCache.getMd5sum(romFile));
+    }
+
+    @Test
+    public void testGetMd5sum_FileChanged() throws Exception {
+        ROMFingerprintCache romFingerprintCache = new ROMFingerprintCache(new GsonSingleton(), cacheFile);
+        romFingerprintCache.putMd5sum(romFile, "abc123");
+
+        FileUtils.writeByteArrayToFile(romFile, new byte[] {1, 2, 3, 4});
+        assertFalse(romFingerprintCache.getMd5sum(romFile).isPresent());
+    }
+
+    @Test
+    public void testGetMd5sum_FileTouched() throws Exception {
+        ROMFingerprintCache romFingerprintCache = new ROMFingerprintCache(new GsonSingleton(), cacheFile);
+        romFingerprintCache.putMd5sum(romFile, "abc123");
+
+        assertTrue(romFile.setLastModified(romFile.lastModified() - 10000));
+        assertFalse(romFingerprintCache.getMd5sum(romFile).isPresent());
+    }
+
+    @Test
+    public void testLoad_Corrupt() throws Exception {
+        FileUtils.writeStringToFile(cacheFile, "{not json");
+
+        ROMFingerprintCache romFingerprintCache = new ROMFingerprintCache(new GsonSingleton(), cacheFile);
+        assertFalse(romFingerprintCache.getMd5sum(romFile).isPresent());
+    }
+}
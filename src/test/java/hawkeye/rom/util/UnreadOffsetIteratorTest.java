@@ -0,0 +1,71 @@
+package hawkeye.rom.util;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class UnreadOffsetIteratorTest {
+    private ROMCoverage coverage;
+
+    @Before
+    public void init() {
+        coverage = new ROMCoverage(300);
+    }
+
+    @Test
+    public void testIterate_SkipsReadBytes() throws Exception {
+        coverage.markRange(0, 10);
+        coverage.markRange(11, 89);
+
+        UnreadOffsetIterator iterator = new UnreadOffsetIterator(coverage, ImmutableList.of(new ROMCoverage.Run(0, 102)));
+
+        assertTrue(iterator.hasNext());
+        assertEquals(10, iterator.nextLong());
+        assertEquals(100, iterator.nextLong());
+        assertEquals(101, iterator.nextLong());
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testIterate_MultipleRegions() throws Exception {
+        coverage.markRange(0, 300);
+
+        UnreadOffsetIterator iterator = new UnreadOffsetIterator(coverage, ImmutableList.of(
+                new ROMCoverage.Run(10, 20),
+                new ROMCoverage.Run(200, 210)));
+
+        assertFalse(iterator.hasNext());
+
+        coverage = new ROMCoverage(300);
+        coverage.markRange(0, 205);
+        iterator = new UnreadOffsetIterator(coverage, ImmutableList.of(
+                new ROMCoverage.Run(10, 20),
+                new ROMCoverage.Run(200, 207)));
+
+        assertEquals(205, iterator.nextLong());
+        assertEquals(206, iterator.nextLong());
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testIterate_PicksUpCoverageAddedBetweenCalls() throws Exception {
+        UnreadOffsetIterator iterator = new UnreadOffsetIterator(coverage, ImmutableList.of(new ROMCoverage.Run(0, 300)));
+
+        // Simulate each yielded block being parsed and marked as read before asking for the next one
+        int numBlocks = 0;
+        long previousOffset = -1;
+        while (iterator.hasNext()) {
+            long offset = iterator.nextLong();
+            assertTrue(offset > previousOffset);
+            assertEquals(0, offset % 30);
+
+            coverage.markRange(offset, 30);
+            previousOffset = offset;
+            ++numBlocks;
+        }
+
+        assertEquals(10, numBlocks);
+    }
+}
@@ -0,0 +1,460 @@
+package hawkeye.service;
+
+import com.google.common.collect.ImmutableList;
+import hawkeye.config.model.ControlCode;
+import hawkeye.config.model.TextTable;
+import hawkeye.config.util.ControlCodeDeserializationFactory;
+import hawkeye.config.util.GsonSingleton;
+import hawkeye.config.util.TextTableFactory;
+import hawkeye.game.model.Game;
+import hawkeye.game.model.ScriptIndexEntry;
+import hawkeye.graph.model.CompactGraph;
+import hawkeye.graph.model.GraphComparison;
+import hawkeye.graph.model.GraphNode;
+import hawkeye.graph.util.GraphComparer;
+import hawkeye.parse.exceptions.InvalidTextException;
+import hawkeye.parse.model.ParseBudget;
+import hawkeye.parse.util.CodeSyntaxTreeFactory;
+import hawkeye.parse.util.CodeTreeParser;
+import hawkeye.parse.util.TextTreeParser;
+import hawkeye.rom.exceptions.ROMAccessException;
+import hawkeye.rom.util.ArrayROM;
+import hawkeye.rom.util.ROMSlice;
+import hawkeye.service.filters.GraphFilter;
+import hawkeye.service.filters.GraphGrouper;
+import hawkeye.service.modules.exceptions.ModuleException;
+import hawkeye.service.modules.iface.ComparisonSink;
+import hawkeye.service.modules.iface.GameModule;
+import hawkeye.service.modules.iface.ViewModule;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ComparisonServiceTest {
+    private static final int NUM_ENTRIES = 200;
+
+    private static class TestScriptIndexEntry extends ScriptIndexEntry {
+        private final int id;
+
+        private TestScriptIndexEntry(int id) {
+            this.id = id;
+        }
+    }
+
+    private static class TestGame extends Game<TestScriptIndexEntry> {
+        private final String name;
+
+        private TestGame(String name) {
+            super(null, null);
+            this.name = name;
+        }
+
+        @Override
+        public int read(long offset) {
+            return 0;
+        }
+
+        @Override
+        public int[] readArray(long offset, int length) {
+            return new int[length];
+        }
+
+        @Override
+        public ROMSlice readSlice(long offset, int length) {
+            return ROMSlice.of(new int[length]);
+        }
+
+        @Override
+        public int peek(long offset) {
+            return 0;
+        }
+
+        @Override
+        public ROMSlice peekSlice(long offset, int length) {
+            return ROMSlice.of(new int[length]);
+        }
+
+        @Override
+        public void markRead(long offset, int length) {
+        }
+
+        @Override
+        public Optional<Long> readPointer(long offset) {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<Long> readRelativePointer(long offset, long base) {
+            return Optional.empty();
+        }
+    }
+
+    private static class TestGameModule implements GameModule<TestGame, TestScriptIndexEntry> {
+        private AtomicInteger numParses = new AtomicInteger();
+
+        @Override
+        public TestGame getGame(File file) {
+            return new TestGame(file.getName());
+        }
+
+        @Override
+        public List<TestScriptIndexEntry> getIndex(TestGame game) {
+            List<TestScriptIndexEntry> index = new ArrayList<>();
+            for (int i = 0; i < NUM_ENTRIES; ++i) {
+                index.add(new TestScriptIndexEntry(i));
+            }
+            return index;
+        }
+
+        @Override
+        public Iterator<TestScriptIndexEntry> getUnusedScriptIndexEntries(TestGame game) {
+            return Collections.emptyIterator();
+        }
+
+        @Override
+        public CompactGraph<String> parse(TestGame game, TestScriptIndexEntry indexEntry) throws ModuleException {
+            return parse(game, indexEntry, ParseBudget.createDefault());
+        }
+
+        @Override
+        public CompactGraph<String> parse(TestGame game, TestScriptIndexEntry indexEntry, ParseBudget parseBudget)
+                throws ModuleException {
+            numParses.incrementAndGet();
+
+            // Make entries finish out of order when run in parallel
+            try {
+                Thread.sleep(indexEntry.id % 3);
+            } catch (InterruptedException e) {
+                throw new ModuleException("Interrupted", e);
+            }
+
+            GraphNode<String> root = new GraphNode<>(null);
+            GraphNode<String> line = new GraphNode<>(game.name + " " + indexEntry.id);
+            root.addVertex(line);
+            if (indexEntry.id % 2 == 0) {
+                line.addVertex(new GraphNode<>("even"));
+            }
+            return CompactGraph.of(root);
+        }
+
+        @Override
+        public GraphNode<String> parseSingleLine(TestGame game, TestScriptIndexEntry indexEntry) {
+            return new GraphNode<>(null);
+        }
+    }
+
+    private static class ParsingGame extends Game<TestScriptIndexEntry> {
+        private ParsingGame(int[] bytes) {
+            super(null, new ArrayROM(bytes));
+        }
+
+        @Override
+        public int read(long offset) throws ROMAccessException {
+            return rom.read(offset);
+        }
+
+        @Override
+        public int[] readArray(long offset, int length) throws ROMAccessException {
+            return rom.readArray(offset, length);
+        }
+
+        @Override
+        public ROMSlice readSlice(long offset, int length) throws ROMAccessException {
+            return rom.readSlice(offset, length);
+        }
+
+        @Override
+        public int peek(long offset) throws ROMAccessException {
+            return rom.peek(offset);
+        }
+
+        @Override
+        public ROMSlice peekSlice(long offset, int length) throws ROMAccessException {
+            return rom.peekSlice(offset, length);
+        }
+
+        @Override
+        public void markRead(long offset, int length) {
+            rom.getCoverage().markRange(offset, length);
+        }
+
+        @Override
+        public Optional<Long> readPointer(long offset) throws ROMAccessException {
+            return Optional.of(rom.readMultiLittleEndian(offset, 3));
+        }
+
+        @Override
+        public Optional<Long> readRelativePointer(long offset, long base) {
+            return Optional.empty();
+        }
+    }
+
+    /*
+    Scripts that jump to the start of a few shared subroutines and into the middle of them, parsed with a real
+    CodeTreeParser so that they go through the game's subgraph cache.
+    */
+    private static class ParsingGameModule implements GameModule<ParsingGame, TestScriptIndexEntry> {
+        private static final int NUM_SUBROUTINES = 4;
+        private static final int SUBROUTINE_LENGTH = 10;
+
+        private final CodeTreeParser codeTreeParser;
+        private final TextTreeParser textTreeParser = new TextTreeParser();
+        private final boolean isCacheCleared;
+        private final List<Integer> offsets = new ArrayList<>();
+        private final int[] bytes;
+
+        private ParsingGameModule(boolean isCacheCleared) throws Exception {
+            this.isCacheCleared = isCacheCleared;
+
+            GsonSingleton gson = new GsonSingleton();
+            TextTable textTable = new TextTableFactory(gson).createFromFile("src/test/data/test-char-lookup.json");
+            Collection<ControlCode> controlCodes = new ControlCodeDeserializationFactory(gson)
+                    .createCollectionFromFile("src/test/data/test-codelist2.json");
+            CodeSyntaxTreeFactory codeSyntaxTreeFactory = new CodeSyntaxTreeFactory();
+            codeTreeParser = new CodeTreeParser(
+                    codeSyntaxTreeFactory.compile(codeSyntaxTreeFactory.createTree(controlCodes, textTable)));
+
+            List<Integer> scripts = new ArrayList<>();
+            int subroutinesOffset = NUM_ENTRIES * 10;
+            int sharedTextOffset = subroutinesOffset + NUM_SUBROUTINES * SUBROUTINE_LENGTH;
+            for (int i = 0; i < NUM_ENTRIES; ++i) {
+                offsets.add(scripts.size());
+                int subroutine = subroutinesOffset + (i / 3 % NUM_SUBROUTINES) * SUBROUTINE_LENGTH;
+                switch (i % 3) {
+                    case 0:
+                        // Unconditional goto to the start of a subroutine
+                        addReference(scripts, 15, subroutine);
+                        break;
+                    case 1:
+                        // Conditional goto to the start, then an unconditional one into the middle
+                        addReference(scripts, 14, subroutine);
+                        addReference(scripts, 15, subroutine + 2);
+                        break;
+                    default:
+                        // Call into the middle
+                        addReference(scripts, 17, subroutine + 2);
+                        scripts.add(255);
+                }
+            }
+            while (scripts.size() < subroutinesOffset) {
+                scripts.add(255);
+            }
+            for (int i = 0; i < NUM_SUBROUTINES; ++i) {
+                scripts.add(i);
+                scripts.add(1);
+                addReference(scripts, 14, sharedTextOffset);
+                scripts.add(2);
+                scripts.add(3);
+                scripts.add(255);
+            }
+            scripts.addAll(ImmutableList.of(4, 5, 255));
+
+            bytes = scripts.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        private static void addReference(List<Integer> scripts, int controlCode, int offset) {
+            scripts.addAll(ImmutableList.of(controlCode, offset & 0xff, (offset >> 8) & 0xff, 0, 0));
+        }
+
+        @Override
+        public ParsingGame getGame(File file) {
+            return new ParsingGame(bytes);
+        }
+
+        @Override
+        public List<TestScriptIndexEntry> getIndex(ParsingGame game) {
+            List<TestScriptIndexEntry> index = new ArrayList<>();
+            for (int i = 0; i < NUM_ENTRIES; ++i) {
+                index.add(new TestScriptIndexEntry(i));
+            }
+            return index;
+        }
+
+        @Override
+        public Iterator<TestScriptIndexEntry> getUnusedScriptIndexEntries(ParsingGame game) {
+            return Collections.emptyIterator();
+        }
+
+        @Override
+        public CompactGraph<String> parse(ParsingGame game, TestScriptIndexEntry indexEntry) throws ModuleException {
+            return parse(game, indexEntry, ParseBudget.createDefault());
+        }
+
+        @Override
+        public CompactGraph<String> parse(ParsingGame game, TestScriptIndexEntry indexEntry, ParseBudget parseBudget)
+                throws ModuleException {
+            if (isCacheCleared) {
+                game.getSubgraphCache().clear();
+            }
+            try {
+                return textTreeParser.create(CompactGraph.of(
+                        codeTreeParser.parseToGraph(game, offsets.get(indexEntry.id), parseBudget)));
+            } catch (InvalidTextException | ROMAccessException e) {
+                throw new ModuleException("Could not parse entry " + indexEntry.id, e);
+            }
+        }
+
+        @Override
+        public GraphNode<String> parseSingleLine(ParsingGame game, TestScriptIndexEntry indexEntry) {
+            return new GraphNode<>(null);
+        }
+    }
+
+    private static class TestViewModule<TGame extends Game> implements ViewModule<TestScriptIndexEntry, TGame> {
+        private List<TestScriptIndexEntry> index = new ArrayList<>();
+        private List<GraphComparison<String>> graphComparisons = new ArrayList<>();
+        private List<Optional<TestScriptIndexEntry>> representatives = new ArrayList<>();
+        private boolean isFinished = false;
+
+        @Override
+        public ComparisonSink<TestScriptIndexEntry> startComparisons(List<TGame> games) {
+            return new ComparisonSink<TestScriptIndexEntry>() {
+                @Override
+                public void add(TestScriptIndexEntry indexEntry, GraphComparison<String> graphComparison,
+                                Optional<TestScriptIndexEntry> representative) {
+                    index.add(indexEntry);
+                    graphComparisons.add(graphComparison);
+                    representatives.add(representative);
+                }
+
+                @Override
+                public void finish() {
+                    isFinished = true;
+                }
+
+                @Override
+                public void abort() {
+                }
+            };
+        }
+
+        @Override
+        public void viewLines(List<List<TestScriptIndexEntry>> indexes,
+                              List<TGame> games,
+                              List<List<GraphNode<String>>> lines) {
+        }
+    }
+
+    private TestViewModule<TestGame> compare(int numThreads, List<GraphFilter<TestScriptIndexEntry>> graphFilters)
+            throws Exception {
+        TestViewModule<TestGame> viewModule = new TestViewModule<>();
+        ComparisonService<TestGame, TestScriptIndexEntry> comparisonService = new ComparisonService<>(
+                new TestGameModule(), new GraphComparer(), graphFilters, viewModule, numThreads);
+        comparisonService.compare(ImmutableList.of("a", "b"));
+        assertTrue(viewModule.isFinished);
+        return viewModule;
+    }
+
+    private List<GraphComparison<String>> compare(int numThreads) throws Exception {
+        return compare(numThreads, ImmutableList.of()).graphComparisons;
+    }
+
+    @Test
+    public void testCompare_ParallelMatchesSequential() throws Exception {
+        List<GraphComparison<String>> sequentialComparisons = compare(1);
+        List<GraphComparison<String>> parallelComparisons = compare(8);
+
+        assertEquals(NUM_ENTRIES, parallelComparisons.size());
+        for (int i = 0; i < NUM_ENTRIES; ++i) {
+            assertEquals(sequentialComparisons.get(i).getValues(), parallelComparisons.get(i).getValues());
+        }
+        assertTrue(parallelComparisons.get(7).getValues().get(0).contains("a 7"));
+        assertTrue(parallelComparisons.get(7).getValues().get(1).contains("b 7"));
+    }
+
+    private List<GraphComparison<String>> compareParsed(int numThreads, boolean isCacheCleared) throws Exception {
+        TestViewModule<ParsingGame> viewModule = new TestViewModule<>();
+        ComparisonService<ParsingGame, TestScriptIndexEntry> comparisonService = new ComparisonService<>(
+                new ParsingGameModule(isCacheCleared), new GraphComparer(), ImmutableList.of(), viewModule, numThreads);
+        comparisonService.compare(ImmutableList.of("a", "b"));
+        return viewModule.graphComparisons;
+    }
+
+    @Test
+    public void testCompare_ParallelMatchesSequential_SharedSubgraphs() throws Exception {
+        // Parsing every entry with an empty cache gives the graphs a run without any cache would
+        List<GraphComparison<String>> uncachedComparisons = compareParsed(1, true);
+        List<GraphComparison<String>> sequentialComparisons = compareParsed(1, false);
+
+        assertEquals(NUM_ENTRIES, uncachedComparisons.size());
+        for (int run = 0; run < 5; ++run) {
+            List<GraphComparison<String>> parallelComparisons = compareParsed(8, false);
+            for (int i = 0; i < NUM_ENTRIES; ++i) {
+                assertEquals(uncachedComparisons.get(i).getFingerprint(),
+                        sequentialComparisons.get(i).getFingerprint());
+                assertEquals(uncachedComparisons.get(i).getFingerprint(), parallelComparisons.get(i).getFingerprint());
+                assertEquals(uncachedComparisons.get(i).getValues(), parallelComparisons.get(i).getValues());
+            }
+        }
+    }
+
+    @Test
+    public void testCompare_Filters() throws Exception {
+        GraphFilter<TestScriptIndexEntry> evenOnlyFilter = () -> (indexEntry, graphComparison) -> indexEntry.id % 2 == 0;
+        TestViewModule<TestGame> viewModule = compare(8, ImmutableList.of(evenOnlyFilter));
+
+        assertEquals(NUM_ENTRIES / 2, viewModule.index.size());
+        for (int i = 0; i < viewModule.index.size(); ++i) {
+            assertEquals(i * 2, viewModule.index.get(i).id);
+        }
+    }
+
+    @Test
+    public void testCompare_Grouper() throws Exception {
+        // Every entry is grouped under the first entry with the same id modulo 10
+        GraphGrouper<TestScriptIndexEntry> moduloGrouper = () -> {
+            Map<Integer, TestScriptIndexEntry> representatives = new HashMap<>();
+            return (indexEntry, graphComparison) -> {
+                TestScriptIndexEntry representative = representatives.putIfAbsent(indexEntry.id % 10, indexEntry);
+                return Optional.ofNullable(representative);
+            };
+        };
+        TestViewModule<TestGame> viewModule = new TestViewModule<>();
+        ComparisonService<TestGame, TestScriptIndexEntry> comparisonService = new ComparisonService<>(
+                new TestGameModule(), new GraphComparer(), ImmutableList.of(), moduloGrouper, viewModule, 8);
+        comparisonService.compare(ImmutableList.of("a", "b"));
+
+        assertEquals(NUM_ENTRIES, viewModule.index.size());
+        for (int i = 0; i < NUM_ENTRIES; ++i) {
+            Optional<TestScriptIndexEntry> representative = viewModule.representatives.get(i);
+            if (i < 10) {
+                assertFalse(representative.isPresent());
+            } else {
+                assertEquals(i % 10, representative.get().id);
+            }
+        }
+    }
+
+    @Test
+    public void testComparePairs() throws Exception {
+        TestGameModule gameModule = new TestGameModule();
+        Map<List<Integer>, TestViewModule<TestGame>> viewModules = new HashMap<>();
+        ComparisonService<TestGame, TestScriptIndexEntry> comparisonService = new ComparisonService<>(
+                gameModule, new GraphComparer(), ImmutableList.of(), new TestViewModule<>(), 8);
+
+        // The first and last games have the same name, so all of their graphs are identical
+        comparisonService.comparePairs(ImmutableList.of("a", "b", "c/a"), (i, j) -> {
+            TestViewModule<TestGame> viewModule = new TestViewModule<>();
+            viewModules.put(ImmutableList.of(i, j), viewModule);
+            return viewModule;
+        });
+
+        assertEquals(3 * NUM_ENTRIES, gameModule.numParses.get());
+        assertEquals(3, viewModules.size());
+        for (TestViewModule<TestGame> viewModule : viewModules.values()) {
+            assertTrue(viewModule.isFinished);
+        }
+        assertEquals(NUM_ENTRIES, viewModules.get(ImmutableList.of(0, 1)).graphComparisons.size());
+        assertEquals(NUM_ENTRIES, viewModules.get(ImmutableList.of(1, 2)).graphComparisons.size());
+        assertEquals(0, viewModules.get(ImmutableList.of(0, 2)).graphComparisons.size());
+
+        GraphComparison<String> graphComparison = viewModules.get(ImmutableList.of(1, 2)).graphComparisons.get(7);
+        assertEquals(2, graphComparison.getValues().size());
+        assertTrue(graphComparison.getValues().get(0).contains("b 7"));
+        assertTrue(graphComparison.getValues().get(1).contains("a 7"));
+    }
+}
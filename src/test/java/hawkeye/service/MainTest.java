@@ -0,0 +1,24 @@
+package hawkeye.service;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class MainTest {
+    @Test
+    public void testGetPairDirectoryName() throws Exception {
+        List<String> romFilenames = ImmutableList.of("roms/eb.sfc", "roms/m2.sfc");
+        assertEquals("1-eb-vs-2-m2", Main.getPairDirectoryName(romFilenames, 0, 1));
+    }
+
+    @Test
+    public void testGetPairDirectoryName_SameBaseName() throws Exception {
+        List<String> romFilenames = ImmutableList.of("m2.sfc", "proto/earthbound.sfc", "patched/earthbound.sfc");
+        assertNotEquals(Main.getPairDirectoryName(romFilenames, 0, 1), Main.getPairDirectoryName(romFilenames, 0, 2));
+        assertNotEquals(Main.getPairDirectoryName(romFilenames, 0, 1), Main.getPairDirectoryName(romFilenames, 1, 2));
+    }
+}
@@ -0,0 +1,51 @@
+package hawkeye.service.filters;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+import hawkeye.game.model.ScriptIndexEntry;
+import hawkeye.graph.model.GraphComparison;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GraphFilterTest {
+    private static GraphComparison<String> createComparison(String text) {
+        boolean isEmpty = text.isEmpty();
+        return new GraphComparison<>(isEmpty, true, Optional.empty(), ImmutableList.of(), false,
+                Hashing.murmur3_128().hashString(text), Optional.empty());
+    }
+
+    @Test
+    public void testAllOf_ApplyFilter() throws Exception {
+        List<ScriptIndexEntry> index = new ArrayList<>();
+        List<GraphComparison<String>> graphComparisons = new ArrayList<>();
+        for (String text : new String[] {"a", "", "b", "a", "", "c", "b", "d"}) {
+            index.add(new ScriptIndexEntry());
+            graphComparisons.add(createComparison(text));
+        }
+        List<ScriptIndexEntry> expectedIndex = ImmutableList.of(index.get(0), index.get(2), index.get(5), index.get(7));
+
+        GraphFilter<ScriptIndexEntry> graphFilter = GraphFilter.allOf(
+                ImmutableList.of(new RemoveEmptyFilter(), new DedupGraphFilter()));
+        graphFilter.applyFilter(index, graphComparisons);
+
+        assertEquals(expectedIndex, index);
+        assertEquals(ImmutableList.of(createComparison("a"), createComparison("b"), createComparison("c"),
+                createComparison("d")), graphComparisons);
+    }
+
+    @Test
+    public void testAllOf_NewPassStartsFresh() throws Exception {
+        GraphFilter<ScriptIndexEntry> graphFilter = GraphFilter.allOf(ImmutableList.of(new DedupGraphFilter()));
+        ScriptIndexEntry indexEntry = new ScriptIndexEntry();
+
+        graphFilter.newPass().test(indexEntry, createComparison("a"));
+
+        assertTrue(graphFilter.newPass().test(indexEntry, createComparison("a")));
+    }
+}
@@ -0,0 +1,103 @@
+package hawkeye.service.filters;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+import hawkeye.game.model.ScriptIndexEntry;
+import hawkeye.graph.model.GraphComparison;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.function.BiFunction;
+
+import static org.junit.Assert.*;
+
+public class NearDuplicateGraphGrouperTest {
+    private static final String SHARED_LINE =
+            "@Everyone in this town says the same thing, over and over, every single day of the year.";
+
+    private BiFunction<ScriptIndexEntry, GraphComparison<String>, Optional<ScriptIndexEntry>> pass;
+
+    @Before
+    public void init() {
+        pass = new NearDuplicateGraphGrouper<>().newPass();
+    }
+
+    private static GraphComparison<String> createComparison(String line1, String line2) {
+        return new GraphComparison<>(false, true, Optional.empty(), ImmutableList.of(
+                Arrays.asList(null, line1),
+                Arrays.asList(null, line2)), false, Hashing.murmur3_128().hashString(line1 + line2), Optional.empty());
+    }
+
+    private static GraphComparison<String> createWelcomeComparison(String town) {
+        return createComparison(
+                "@Welcome to " + town + "! The mayor is in the town hall, just north of the drugstore. Do drop by and "
+                        + "say hello to him sometime, he loves visitors and always has a story to tell.",
+                "@Bienvenue a " + town + " ! Le maire est dans la mairie, juste au nord de la pharmacie. Passe donc "
+                        + "lui dire bonjour un de ces jours, il adore les visiteurs et a toujours une histoire a raconter.");
+    }
+
+    private static GraphComparison<String> createComparisonWithSharedLine(String line1, String line2) {
+        return new GraphComparison<>(false, true, Optional.empty(), ImmutableList.of(
+                Arrays.asList(null, SHARED_LINE, line1),
+                Arrays.asList(null, SHARED_LINE, line2)), false, Hashing.murmur3_128().hashString(line1 + line2),
+                Optional.empty());
+    }
+
+    @Test
+    public void testNewPass_NearDuplicate() throws Exception {
+        ScriptIndexEntry onett = new ScriptIndexEntry();
+        ScriptIndexEntry twoson = new ScriptIndexEntry();
+        assertEquals(Optional.empty(), pass.apply(onett, createWelcomeComparison("Onett")));
+        assertEquals(Optional.of(onett), pass.apply(twoson, createWelcomeComparison("Twoson")));
+    }
+
+    @Test
+    public void testNewPass_NearDuplicate_SameRepresentative() throws Exception {
+        ScriptIndexEntry onett = new ScriptIndexEntry();
+        assertEquals(Optional.empty(), pass.apply(onett, createWelcomeComparison("Onett")));
+        assertEquals(Optional.of(onett), pass.apply(new ScriptIndexEntry(), createWelcomeComparison("Twoson")));
+        assertEquals(Optional.of(onett), pass.apply(new ScriptIndexEntry(), createWelcomeComparison("Threed")));
+    }
+
+    @Test
+    public void testNewPass_Different() throws Exception {
+        assertEquals(Optional.empty(), pass.apply(new ScriptIndexEntry(), createWelcomeComparison("Onett")));
+        assertEquals(Optional.empty(), pass.apply(new ScriptIndexEntry(), createComparison(
+                "@Have you seen my dog? He ran off towards the hill last night.",
+                "@Avez-vous vu mon chien ? Il s'est enfui vers la colline hier soir.")));
+    }
+
+    // Text that is the same in every game says nothing about how the games differ
+    @Test
+    public void testNewPass_SameLinesIgnored() throws Exception {
+        assertEquals(Optional.empty(), pass.apply(new ScriptIndexEntry(), createComparisonWithSharedLine(
+                "@Hi.", "@Salut.")));
+        assertEquals(Optional.empty(), pass.apply(new ScriptIndexEntry(), createComparisonWithSharedLine(
+                "@Bye now.", "@Au revoir.")));
+    }
+
+    // The same text on different sides of the comparison is a different difference
+    @Test
+    public void testNewPass_GamesKeptApart() throws Exception {
+        String line1 = "@Welcome to Onett! The mayor is in the town hall, just north of the drugstore.";
+        String line2 = "@Bienvenue a Onett ! Le maire est dans la mairie, juste au nord de la pharmacie.";
+        assertEquals(Optional.empty(), pass.apply(new ScriptIndexEntry(), createComparison(line1, line2)));
+        assertEquals(Optional.empty(), pass.apply(new ScriptIndexEntry(), createComparison(line2, line1)));
+    }
+
+    @Test
+    public void testNewPass_NoText() throws Exception {
+        assertEquals(Optional.empty(), pass.apply(new ScriptIndexEntry(), createComparison(null, "")));
+        assertEquals(Optional.empty(), pass.apply(new ScriptIndexEntry(), createComparison(null, "")));
+    }
+
+    @Test
+    public void testGetSimilarity_Identical() throws Exception {
+        GraphComparison<String> graphComparison = createComparison("abcdef", "ghijkl");
+        assertEquals(1.0, NearDuplicateGraphGrouper.getSimilarity(
+                NearDuplicateGraphGrouper.getSignature(graphComparison),
+                NearDuplicateGraphGrouper.getSignature(graphComparison)), 0);
+    }
+}
@@ -0,0 +1,188 @@
+package hawkeye.service.modules.mother2;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+import hawkeye.game.mother2.games.Mother2Game;
+import hawkeye.game.mother2.games.Mother2ScriptIndexEntry;
+import hawkeye.graph.model.Alignment;
+import hawkeye.graph.model.GraphComparison;
+import hawkeye.graph.model.GraphNode;
+import hawkeye.service.modules.exceptions.ModuleException;
+import hawkeye.service.modules.iface.ComparisonSink;
+import hawkeye.view.FreemarkerConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class Mother2HtmlFileViewModuleTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Mother2HtmlFileViewModule viewModule;
+
+    @Before
+    public void init() throws Exception {
+        viewModule = new Mother2HtmlFileViewModule(
+                temporaryFolder.getRoot().getPath(), new FreemarkerConfiguration());
+    }
+
+    private GraphComparison<String> createComparison(String line1, String line2) {
+        return new GraphComparison<>(false, true, Optional.empty(), ImmutableList.of(
+                Arrays.asList(null, line1),
+                Arrays.asList(null, line2)), false, Hashing.murmur3_128().hashString(line1 + line2), Optional.empty());
+    }
+
+    @Test
+    public void testStartComparisons() throws Exception {
+        ComparisonSink<Mother2ScriptIndexEntry> comparisonSink = viewModule.startComparisons(ImmutableList.of());
+        // More entries than fit in a page's queue, so rendering has to keep up while entries are being added
+        for (int i = 0; i < 500; ++i) {
+            comparisonSink.add(new Mother2ScriptIndexEntry(Mother2ScriptIndexEntry.IndexEntryType.ITEM, i),
+                    createComparison("Item " + i, "Objet " + i));
+        }
+        comparisonSink.add(new Mother2ScriptIndexEntry(Mother2ScriptIndexEntry.IndexEntryType.DOOR, 3),
+                createComparison("Knock knock", "Toc toc"));
+        comparisonSink.finish();
+
+        String items = FileUtils.readFileToString(new File(temporaryFolder.getRoot(), "index.html"));
+        // Only the words that differ are highlighted
+        assertTrue(items.contains("<span class=\"changed\">Item</span> 0"));
+        assertTrue(items.contains("<span class=\"changed\">Objet</span> 499"));
+        assertTrue(items.indexOf("Item</span> 10<") < items.indexOf("Item</span> 11<"));
+        assertFalse(items.contains("Knock"));
+
+        String doors = FileUtils.readFileToString(new File(temporaryFolder.getRoot(), "doors.html"));
+        assertTrue(doors.contains("Knock</span> <span class=\"changed\">knock"));
+
+        String npcs = FileUtils.readFileToString(new File(temporaryFolder.getRoot(), "npcs.html"));
+        assertTrue(npcs.contains("(No differences)"));
+    }
+
+    @Test
+    public void testStartComparisons_Grouped() throws Exception {
+        Mother2ScriptIndexEntry onett = new Mother2ScriptIndexEntry(Mother2ScriptIndexEntry.IndexEntryType.NPC_1, 1);
+        ComparisonSink<Mother2ScriptIndexEntry> comparisonSink = viewModule.startComparisons(ImmutableList.of());
+        comparisonSink.add(onett, createComparison("Welcome to Onett", "Bienvenue a Onett"));
+        comparisonSink.add(new Mother2ScriptIndexEntry(Mother2ScriptIndexEntry.IndexEntryType.NPC_1, 2),
+                createComparison("Welcome to Twoson", "Bienvenue a Twoson"), Optional.of(onett));
+        comparisonSink.add(new Mother2ScriptIndexEntry(Mother2ScriptIndexEntry.IndexEntryType.DOOR, 3),
+                createComparison("Welcome to Threed", "Bienvenue a Threed"), Optional.of(onett));
+        comparisonSink.finish();
+
+        // Grouped entries are still shown, folded away under a link to their group's representative
+        String npcs = FileUtils.readFileToString(new File(temporaryFolder.getRoot(), "npcs.html"));
+        assertTrue(npcs.contains("<h2 id=\"npc_1-1\">"));
+        assertTrue(npcs.contains("<a href=\"npcs.html#npc_1-1\">NPC #1</a>"));
+        assertTrue(npcs.contains("Twoson"));
+        assertEquals(1, npcs.split("<details", -1).length - 1);
+        assertTrue(npcs.indexOf("<details") > npcs.indexOf("Onett"));
+
+        String doors = FileUtils.readFileToString(new File(temporaryFolder.getRoot(), "doors.html"));
+        assertTrue(doors.contains("<a href=\"npcs.html#npc_1-1\">NPC #1</a>"));
+        assertTrue(doors.contains("Threed"));
+    }
+
+    @Test
+    public void testStartComparisons_NonisomorphicThreeGames() throws Exception {
+        GraphComparison<String> graphComparison = new GraphComparison<>(false, false, Optional.empty(),
+                ImmutableList.of(
+                        Collections.unmodifiableList(Arrays.asList(null, "Hello")),
+                        Collections.unmodifiableList(Arrays.asList(null, "Bonjour", "Salut")),
+                        Collections.unmodifiableList(Arrays.asList(null, "Hallo"))),
+                false, Hashing.murmur3_128().hashString("Hello"), Optional.empty());
+
+        ComparisonSink<Mother2ScriptIndexEntry> comparisonSink = viewModule.startComparisons(ImmutableList.of());
+        comparisonSink.add(new Mother2ScriptIndexEntry(Mother2ScriptIndexEntry.IndexEntryType.DOOR, 1), graphComparison);
+        comparisonSink.finish();
+
+        String doors = FileUtils.readFileToString(new File(temporaryFolder.getRoot(), "doors.html"));
+        assertTrue(doors.contains("Bonjour"));
+        assertTrue(doors.contains("Salut"));
+        assertTrue(doors.contains("Hallo"));
+    }
+
+    @Test
+    public void testStartComparisons_Aligned() throws Exception {
+        GraphComparison<String> graphComparison = new GraphComparison<>(false, false, Optional.empty(),
+                ImmutableList.of(
+                        Arrays.asList(null, "Hello", "Goodbye"),
+                        Arrays.asList(null, "Hello", "Inserted", "Goodbye")),
+                false, Hashing.murmur3_128().hashString("Hello"),
+                Optional.of(new Alignment(ImmutableList.of(
+                        ImmutableList.of(0, 0),
+                        ImmutableList.of(1, 1),
+                        Arrays.asList(null, 2),
+                        ImmutableList.of(2, 3)), 3)));
+
+        ComparisonSink<Mother2ScriptIndexEntry> comparisonSink = viewModule.startComparisons(ImmutableList.of());
+        comparisonSink.add(new Mother2ScriptIndexEntry(Mother2ScriptIndexEntry.IndexEntryType.DOOR, 1), graphComparison);
+        comparisonSink.finish();
+
+        String doors = FileUtils.readFileToString(new File(temporaryFolder.getRoot(), "doors.html"));
+        assertTrue(doors.contains("2 of 3 lines line up"));
+        assertTrue(doors.indexOf("Hello") < doors.indexOf("Inserted"));
+        assertTrue(doors.indexOf("Inserted") < doors.indexOf("Goodbye"));
+    }
+
+    // Every entry fails to build its view model, which must not leave the producer blocked on a full queue
+    @Test(timeout = 30000)
+    public void testStartComparisons_RenderFailure() throws Exception {
+        GraphComparison<String> brokenComparison = new GraphComparison<>(false, true, Optional.empty(),
+                ImmutableList.of(Arrays.asList(null, "Item"), Collections.singletonList(null)), false,
+                Hashing.murmur3_128().hashString("Item"), Optional.empty());
+        ComparisonSink<Mother2ScriptIndexEntry> comparisonSink = viewModule.startComparisons(ImmutableList.of());
+        for (int i = 0; i < 500; ++i) {
+            comparisonSink.add(new Mother2ScriptIndexEntry(Mother2ScriptIndexEntry.IndexEntryType.ITEM, i),
+                    brokenComparison);
+        }
+
+        try {
+            comparisonSink.finish();
+            fail("Expected ModuleException");
+        } catch (ModuleException e) {
+            // The page could not be rendered
+        }
+    }
+
+    @Test
+    public void testViewLines() throws Exception {
+        Mother2Game game1 = mock(Mother2Game.class);
+        when(game1.getDisplayName()).thenReturn("EB (SNES)");
+        Mother2Game game2 = mock(Mother2Game.class);
+        when(game2.getDisplayName()).thenReturn("M2 (SNES)");
+        List<Mother2ScriptIndexEntry> index = ImmutableList.of(
+                new Mother2ScriptIndexEntry(Mother2ScriptIndexEntry.IndexEntryType.OTHER, 1),
+                new Mother2ScriptIndexEntry(Mother2ScriptIndexEntry.IndexEntryType.ITEM, 2),
+                new Mother2ScriptIndexEntry(Mother2ScriptIndexEntry.IndexEntryType.OTHER, 3));
+
+        viewModule.viewLines(ImmutableList.of(index, index), ImmutableList.of(game1, game2), ImmutableList.of(
+                ImmutableList.of(createLine("Other one"), createLine("Item two"), createLine("Other three")),
+                ImmutableList.of(createLine("Autre un"), createLine("Objet deux"), createLine("Autre trois"))));
+
+        String other = FileUtils.readFileToString(new File(temporaryFolder.getRoot(), "other.html"));
+        assertTrue(other.indexOf("Other one") < other.indexOf("Other three"));
+        assertTrue(other.indexOf("Other three") < other.indexOf("<h2>M2 (SNES)"));
+        assertTrue(other.indexOf("<h2>M2 (SNES)") < other.indexOf("Autre un"));
+        assertTrue(other.indexOf("Autre un") < other.indexOf("Autre trois"));
+        assertFalse(other.contains("Item two"));
+        assertFalse(other.contains("Objet deux"));
+    }
+
+    private static GraphNode<String> createLine(String line) {
+        GraphNode<String> root = new GraphNode<>(null);
+        root.addVertex(new GraphNode<>(line));
+        return root;
+    }
+}
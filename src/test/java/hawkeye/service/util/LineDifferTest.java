@@ -0,0 +1,108 @@
+package hawkeye.service.util;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LineDifferTest {
+    private LineDiffer lineDiffer;
+
+    @Before
+    public void init() throws Exception {
+        lineDiffer = new LineDiffer();
+    }
+
+    @Test
+    public void testTokenize() throws Exception {
+        assertEquals(ImmutableList.of("Hello", ",", " ", "world", "!", "[PAUSE]", "\u308a", "\u3093", "\u3054", "[", "1F", " ", "02"),
+                LineDiffer.tokenize("Hello, world![PAUSE]\u308a\u3093\u3054[1F 02"));
+    }
+
+    @Test
+    public void testDiff_OneWordChanged() throws Exception {
+        LineDiffer.LineDiff lineDiff = lineDiffer.diff("I like apples a lot", "I like oranges a lot");
+
+        assertEquals(ImmutableList.of(
+                new LineDiffer.Segment("I like ", false),
+                new LineDiffer.Segment("apples", true),
+                new LineDiffer.Segment(" a lot", false)), lineDiff.getFirst());
+        assertEquals(ImmutableList.of(
+                new LineDiffer.Segment("I like ", false),
+                new LineDiffer.Segment("oranges", true),
+                new LineDiffer.Segment(" a lot", false)), lineDiff.getSecond());
+    }
+
+    @Test
+    public void testDiff_Japanese() throws Exception {
+        LineDiffer.LineDiff lineDiff = lineDiffer.diff("\u306d\u3053\u304c\u3059\u304d", "\u3044\u306c\u304c\u3059\u304d");
+
+        assertEquals(ImmutableList.of(
+                new LineDiffer.Segment("\u306d\u3053", true),
+                new LineDiffer.Segment("\u304c\u3059\u304d", false)), lineDiff.getFirst());
+    }
+
+    @Test
+    public void testDiff_Empty() throws Exception {
+        LineDiffer.LineDiff lineDiff = lineDiffer.diff("", "Hello");
+
+        assertTrue(lineDiff.getFirst().isEmpty());
+        assertEquals(ImmutableList.of(new LineDiffer.Segment("Hello", true)), lineDiff.getSecond());
+    }
+
+    // Both the bit-parallel and the fallback match must find a longest common subsequence
+    @Test
+    public void testMatch_LongestCommonSubsequence() throws Exception {
+        Random random = new Random(42);
+        for (int length : new int[] {1, 5, 63, 64, 65, 127, 128, 129, 300}) {
+            for (int i = 0; i < 10; ++i) {
+                List<String> first = randomTokens(random, length);
+                List<String> second = randomTokens(random, random.nextInt(2 * length) + 1);
+                boolean[] isFirstMatched = new boolean[first.size()];
+                boolean[] isSecondMatched = new boolean[second.size()];
+
+                lineDiffer.match(first, second, isFirstMatched, isSecondMatched);
+
+                List<String> firstMatched = new ArrayList<>();
+                for (int j = 0; j < first.size(); ++j) {
+                    if (isFirstMatched[j]) {
+                        firstMatched.add(first.get(j));
+                    }
+                }
+                List<String> secondMatched = new ArrayList<>();
+                for (int j = 0; j < second.size(); ++j) {
+                    if (isSecondMatched[j]) {
+                        secondMatched.add(second.get(j));
+                    }
+                }
+                assertEquals(firstMatched, secondMatched);
+                assertEquals(lcsLength(first, second), firstMatched.size());
+            }
+        }
+    }
+
+    private static List<String> randomTokens(Random random, int length) {
+        List<String> tokens = new ArrayList<>(length);
+        for (int i = 0; i < length; ++i) {
+            tokens.add(Character.toString((char) ('a' + random.nextInt(4))));
+        }
+        return tokens;
+    }
+
+    private static int lcsLength(List<String> a, List<String> b) {
+        int[][] lengths = new int[a.size() + 1][b.size() + 1];
+        for (int i = 1; i <= a.size(); ++i) {
+            for (int j = 1; j <= b.size(); ++j) {
+                lengths[i][j] = a.get(i - 1).equals(b.get(j - 1))
+                        ? lengths[i - 1][j - 1] + 1
+                        : Math.max(lengths[i - 1][j], lengths[i][j - 1]);
+            }
+        }
+        return lengths[a.size()][b.size()];
+    }
+}
@@ -4,6 +4,9 @@ import com.google.common.collect.ImmutableList;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
+
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class LineMatchCheckerTest {
@@ -34,4 +37,11 @@ public class LineMatchCheckerTest {
                         "　いくつもりなのかな？\n" +
                         "はい　いいえ")));
     }
+
+    @Test
+    public void testAreLinesSame_Different() throws Exception {
+        assertFalse(lineMatchChecker.areLinesSame(ImmutableList.of("abc def", "abc de")));
+        assertFalse(lineMatchChecker.areLinesSame(Arrays.asList("abc", null)));
+        assertTrue(lineMatchChecker.areLinesSame(Arrays.asList(null, null)));
+    }
 }
@@ -0,0 +1,70 @@
+package hawkeye.service.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class NormalizedLineCacheTest {
+    private NormalizedLineCache normalizedLineCache;
+
+    @Before
+    public void init() {
+        this.normalizedLineCache = new NormalizedLineCache();
+    }
+
+    @Test
+    public void testRemoveWhitespace_MatchesRegex() throws Exception {
+        char[] alphabet = {'a', '\u3042', ' ', '\t', '\n', '\u000B', '\f', '\r', '\u3000', '\u00a0'};
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; ++i) {
+            StringBuilder line = new StringBuilder();
+            for (int j = random.nextInt(20); j > 0; --j) {
+                line.append(alphabet[random.nextInt(alphabet.length)]);
+            }
+            String expected = line.toString().replace("\u3000", "").replaceAll("\\s", "");
+
+            assertEquals(expected, NormalizedLineCache.removeWhitespace(line.toString()));
+        }
+    }
+
+    @Test
+    public void testRemoveWhitespace_NoWhitespace() throws Exception {
+        String line = "abc";
+        assertSame(line, NormalizedLineCache.removeWhitespace(line));
+    }
+
+    @Test
+    public void testGet_Cached() throws Exception {
+        assertSame(normalizedLineCache.get("a b"), normalizedLineCache.get("a b"));
+    }
+
+    @Test
+    public void testGet_SameNormalizedLine() throws Exception {
+        NormalizedLineCache.NormalizedLine a = normalizedLineCache.get("a b\u3000c");
+        NormalizedLineCache.NormalizedLine b = normalizedLineCache.get("abc");
+
+        assertEquals("abc", a.getText());
+        assertEquals(a.getFingerprint(), b.getFingerprint());
+        assertEquals(a, b);
+        assertNotEquals(a, normalizedLineCache.get("abd"));
+    }
+
+    @Test
+    public void testGet_MaximumSize() throws Exception {
+        NormalizedLineCache smallNormalizedLineCache = new NormalizedLineCache(2);
+        NormalizedLineCache.NormalizedLine a = smallNormalizedLineCache.get("a a");
+        smallNormalizedLineCache.get("b b");
+        smallNormalizedLineCache.get("c c");
+
+        assertEquals(2, smallNormalizedLineCache.size());
+        assertEquals(a, smallNormalizedLineCache.get("a a"));
+    }
+
+    @Test
+    public void testGet_Null() throws Exception {
+        assertNull(normalizedLineCache.get(null));
+    }
+}